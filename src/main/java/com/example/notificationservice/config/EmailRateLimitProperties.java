@@ -0,0 +1,54 @@
+package com.example.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sending limits per recipient domain ({@code app.notification.email.rate-limit.*}).
+ * Domains without an entry in {@code domains} share the {@code defaults} values, each with a
+ * bucket of its own.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.notification.email.rate-limit")
+public class EmailRateLimitProperties {
+
+    private Limit defaults = new Limit();
+
+    /**
+     * Limits by lower-case recipient domain, e.g. {@code gmail.com}
+     */
+    private Map<String, Limit> domains = new HashMap<>();
+
+    /**
+     * How long a domain is paused after it answered with a 4xx (temporary) SMTP error
+     */
+    private long transientFailureBackoffMs = 30000;
+
+    /**
+     * Longest an email is held in memory waiting for its domain; past that it is handed back to
+     * the database and sent by the spill drainer
+     */
+    private long maxHoldMs = 60000;
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Sustained messages per second
+         */
+        private double ratePerSecond = 10;
+
+        /**
+         * Messages that may go out at once after a quiet period
+         */
+        private int burst = 20;
+
+        /**
+         * Messages to the domain in flight at the same time
+         */
+        private int maxConcurrent = 10;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.notificationservice.config;
+
+import com.example.notificationservice.service.PooledJavaMailSender;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Properties;
+
+/**
+ * Replaces the auto-configured JavaMailSender with one that reuses SMTP connections.
+ * Connection settings still come from {@code spring.mail.*}.
+ */
+@Configuration
+@EnableConfigurationProperties({MailProperties.class, EmailRateLimitProperties.class})
+public class MailConfig {
+
+    @Bean
+    public PooledJavaMailSender mailSender(MailProperties properties,
+            @Value("${app.notification.email.pool.max-connections:4}") int maxConnections,
+            @Value("${app.notification.email.pool.idle-timeout-ms:60000}") long idleTimeoutMs,
+            @Value("${app.notification.email.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+            @Value("${app.notification.email.pool.borrow-timeout-ms:10000}") long borrowTimeoutMs) {
+
+        PooledJavaMailSender sender = new PooledJavaMailSender(
+                maxConnections, idleTimeoutMs, maxMessagesPerConnection, borrowTimeoutMs);
+
+        sender.setHost(properties.getHost());
+        if (properties.getPort() != null) {
+            sender.setPort(properties.getPort());
+        }
+        sender.setUsername(properties.getUsername());
+        sender.setPassword(properties.getPassword());
+        sender.setProtocol(properties.getProtocol());
+        if (properties.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(properties.getDefaultEncoding().name());
+        }
+        if (!properties.getProperties().isEmpty()) {
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(properties.getProperties());
+            sender.setJavaMailProperties(javaMailProperties);
+        }
+        return sender;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Approximate length caps (MAXLEN ~) applied when publishing to Redis streams
+ * ({@code app.redis.stream-trimming.*}). Nothing is trimmed unless configured: trimming drops
+ * entries a slow or stopped consumer group may not have read yet.
+ */
+@Data
+@ConfigurationProperties(prefix = "app.redis.stream-trimming")
+public class RedisStreamTrimmingProperties {
+
+    /**
+     * Cap of streams without an entry in {@code streams}; 0 keeps every entry
+     */
+    private long defaultMaxLength = 0;
+
+    /**
+     * Caps by stream key, e.g. {@code notification:notification-events}; shards of a stream use
+     * the cap of the stream
+     */
+    private Map<String, Long> streams = new HashMap<>();
+
+    public long maxLengthOf(String streamKey) {
+        return streams.getOrDefault(streamKey, defaultMaxLength);
+    }
+}
@@ -244,7 +244,7 @@ public class RedisStreamTestController {
         public ResponseEntity<Map<String, Object>> bulkPublishUserRegistered(
                         @RequestParam(defaultValue = "10") int count) {
 
-                List<String> messageIds = new ArrayList<>();
+                List<UserRegisteredEvent> events = new ArrayList<>(count);
 
                 for (int i = 1; i <= count; i++) {
                         UserRegisteredEvent event = UserRegisteredEvent.builder()
@@ -255,11 +255,11 @@ public class RedisStreamTestController {
                                         .lastName("Number" + i)
                                         .build();
                         event.init();
-
-                        String messageId = redisStreamService.publish(userEventsStream, event);
-                        messageIds.add(messageId);
+                        events.add(event);
                 }
 
+                List<String> messageIds = redisStreamService.publishAll(userEventsStream, events);
+
                 return ResponseEntity.ok(Map.of(
                                 "success", true,
                                 "count", count,
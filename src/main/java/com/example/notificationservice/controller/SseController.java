@@ -33,10 +33,13 @@ public class SseController {
 
     /**
      * Establish SSE connection for user notifications
-     * Accepts JWT token as query parameter for EventSource compatibility
+     * Accepts JWT token as query parameter for EventSource compatibility.
+     * Events after Last-Event-ID (header, or lastEventId parameter for manual reconnects) are replayed first.
      */
     @GetMapping(value = "/connect", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter connect(@RequestParam(required = false) String token) {
+    public SseEmitter connect(@RequestParam(required = false) String token,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
         Integer userId;
         String username;
 
@@ -77,7 +80,8 @@ public class SseController {
         }
 
         log.info("SSE connection request from user: {} ({})", username, userId);
-        return sseEmitterService.createEmitterForUser(userId);
+        return sseEmitterService.createEmitterForUser(userId,
+                parseEventId(lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam));
     }
 
     /**
@@ -199,6 +203,9 @@ public class SseController {
 
         return ResponseEntity.ok(Map.of(
                 "activeUserConnections", sseEmitterService.getActiveUserConnections(),
+                "connectedUsers", sseEmitterService.getConnectedUsers(),
+                "nodeId", sseEmitterService.getNodeId(),
+                "laggingConnections", sseEmitterService.getLaggingConnections(10),
                 "timestamp", System.currentTimeMillis()));
     }
 
@@ -246,6 +253,21 @@ public class SseController {
                 "timestamp", System.currentTimeMillis()));
     }
 
+    /**
+     * Event id sent back by the client; ids we did not issue are ignored
+     */
+    private Long parseEventId(String eventId) {
+        if (eventId == null || eventId.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(eventId.trim());
+        } catch (NumberFormatException e) {
+            log.debug("Ignoring unparsable Last-Event-ID: {}", eventId);
+            return null;
+        }
+    }
+
     /**
      * Helper method to extract userId from token parameter
      */
@@ -2,11 +2,13 @@ package com.example.notificationservice.entity;
 
 import com.example.notificationservice.enums.NotificationChannel;
 import com.example.notificationservice.enums.NotificationStatus;
+import com.example.notificationservice.util.UuidV7Generator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -20,7 +22,7 @@ import java.util.UUID;
 public class Notification {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     private UUID id;
 
     @Column(name = "recipient_id")
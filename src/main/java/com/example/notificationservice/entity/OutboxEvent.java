@@ -0,0 +1,40 @@
+package com.example.notificationservice.entity;
+
+import com.example.notificationservice.util.UuidV7Generator;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.util.UUID;
+
+/**
+ * Event waiting to be published to a Redis stream (transactional outbox). The time-ordered id
+ * gives both the relay order and the creation time.
+ */
+@Entity
+@Table(name = "notification_outbox")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @UuidGenerator(algorithm = UuidV7Generator.class)
+    private UUID id;
+
+    @Column(nullable = false, length = 255)
+    private String stream;
+
+    /**
+     * Fully qualified class name of the event, used to deserialize the payload
+     */
+    @Column(name = "event_type", nullable = false, length = 255)
+    private String eventType;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String payload;
+}
@@ -18,7 +18,10 @@ import lombok.experimental.SuperBuilder;
 public class BulkNotificationCompletedEvent extends BaseEvent {
     private String batchId;
     private Integer totalRecipients;
+    private Integer processedRecipients;
     private Integer successfulSent;
     private Integer failedSent;
     private String notificationType;
+    // false for progress updates published while the batch is still running
+    private Boolean completed;
 }
\ No newline at end of file
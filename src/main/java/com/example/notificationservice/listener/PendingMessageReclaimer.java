@@ -0,0 +1,316 @@
+package com.example.notificationservice.listener;
+
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.StreamMessage;
+import io.lettuce.core.XAutoClaimArgs;
+import io.lettuce.core.cluster.api.async.RedisClusterAsyncCommands;
+import io.lettuce.core.models.stream.ClaimedMessages;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers records stuck in a consumer group's pending entries list.
+ * Records whose handler failed, or that were read by a consumer that has since died, are
+ * claimed by this consumer with XAUTOCLAIM once they have been idle for {@code min-idle-ms}
+ * and handed back to the stream's handler. Records delivered {@code max-deliveries} times are
+ * moved to a dead-letter stream and acknowledged.
+ *
+ * Records still being processed on this node are tracked as in flight. Every run first
+ * re-claims them with XCLAIM JUSTID, which resets their idle time without counting a delivery,
+ * so neither this node nor another one reclaims a record that is only waiting in a lane or a
+ * long bulk job. This holds as long as {@code interval-ms} is below {@code min-idle-ms}.
+ *
+ * Only the Redis calls run on the shared scheduler. Claimed records are handed to the stream's
+ * handler on a thread of their own, as the handler may wait for room on a full lane or read the
+ * database; while a stream's previous records are still being handed over, no more are claimed
+ * for it, and those records are kept from being reclaimed like the ones in flight.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PendingMessageReclaimer {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StreamAcknowledger streamAcknowledger;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.redis.consumer.group-id}")
+    private String consumerGroup;
+
+    @Value("${app.redis.consumer.name}")
+    private String consumerName;
+
+    @Value("${app.redis.consumer.reclaim.min-idle-ms:60000}")
+    private long minIdleMs;
+
+    @Value("${app.redis.consumer.reclaim.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.redis.consumer.reclaim.max-deliveries:5}")
+    private int maxDeliveries;
+
+    @Value("${app.redis.consumer.reclaim.dead-letter-suffix::dead-letter}")
+    private String deadLetterSuffix;
+
+    // Ids per XCLAIM when refreshing in-flight records
+    private static final int REFRESH_CHUNK_SIZE = 1000;
+
+    private final Map<String, ReclaimTarget> targets = new ConcurrentHashMap<>();
+
+    private final ExecutorService handoffs =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("stream-reclaim-", 0).factory());
+
+    @FunctionalInterface
+    public interface RecordProcessor {
+        void process(MapRecord<String, Object, Object> record);
+    }
+
+    /**
+     * Register a stream whose pending records should be re-processed by {@code processor}
+     */
+    public void register(String streamKey, RecordProcessor processor) {
+        targets.put(streamKey, new ReclaimTarget(processor, ConcurrentHashMap.newKeySet(),
+                Counter.builder("notification.stream.reclaimed")
+                        .description("Pending records claimed for re-processing")
+                        .tag("stream", streamKey)
+                        .register(meterRegistry),
+                Counter.builder("notification.stream.dead.lettered")
+                        .description("Records moved to the dead-letter stream")
+                        .tag("stream", streamKey)
+                        .register(meterRegistry)));
+    }
+
+    /**
+     * Mark a record as being processed on this node
+     *
+     * @return false when it already is, in which case it must not be processed again
+     */
+    public boolean markInFlight(String streamKey, RecordId recordId) {
+        return target(streamKey).inFlight.add(recordId);
+    }
+
+    /**
+     * The record's handler finished, successfully or not
+     */
+    public void clearInFlight(String streamKey, RecordId recordId) {
+        target(streamKey).inFlight.remove(recordId);
+    }
+
+    private ReclaimTarget target(String streamKey) {
+        ReclaimTarget target = targets.get(streamKey);
+        if (target == null) {
+            throw new IllegalStateException("Stream not registered for reclaiming: " + streamKey);
+        }
+        return target;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        handoffs.shutdownNow();
+    }
+
+    @Scheduled(fixedDelayString = "${app.redis.consumer.reclaim.interval-ms:30000}",
+            initialDelayString = "${app.redis.consumer.reclaim.interval-ms:30000}")
+    public void reclaimPendingMessages() {
+        targets.forEach((streamKey, target) -> {
+            try {
+                reclaim(streamKey, target);
+            } catch (Exception e) {
+                log.error("Failed to reclaim pending messages for stream '{}': {}", streamKey, e.getMessage(), e);
+            }
+        });
+    }
+
+    private void reclaim(String streamKey, ReclaimTarget target) {
+        refreshInFlight(streamKey, target);
+
+        if (target.handoff != null && !target.handoff.isDone()) {
+            log.debug("Records reclaimed on stream '{}' are still being handed over, not claiming more", streamKey);
+            return;
+        }
+
+        // XAUTOCLAIM walks the pending entries list from the cursor and claims up to batch-size
+        // entries idle for min-idle; the next run carries on from the returned cursor, which is
+        // back at 0-0 once the whole list has been scanned
+        ClaimedMessages<byte[], byte[]> claimed = autoClaim(streamKey, target.cursor);
+        target.cursor = claimed.getId();
+
+        List<StreamMessage<byte[], byte[]>> messages = claimed.getMessages();
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        // XAUTOCLAIM counted this delivery too
+        Map<RecordId, Long> deliveries = deliveryCounts(streamKey, messages);
+        List<MapRecord<String, Object, Object>> reclaimed = new ArrayList<>();
+
+        for (StreamMessage<byte[], byte[]> message : messages) {
+            RecordId id = RecordId.of(message.getId());
+            if (message.getBody() == null || message.getBody().isEmpty()) {
+                // Trimmed from the stream while pending; nothing left to process
+                streamAcknowledger.acknowledge(streamKey, id);
+                continue;
+            }
+            if (target.inFlight.contains(id)) {
+                // Picked up again by the reader while it sat in the list; that run handles it
+                continue;
+            }
+
+            MapRecord<String, Object, Object> record = toRecord(streamKey, message);
+            if (deliveries.getOrDefault(id, 0L) > maxDeliveries) {
+                moveToDeadLetter(streamKey, record);
+                target.deadLettered.increment();
+            } else {
+                target.handingOff.add(id);
+                reclaimed.add(record);
+            }
+        }
+
+        if (!reclaimed.isEmpty()) {
+            log.info("Reclaimed {} pending records on stream '{}'", reclaimed.size(), streamKey);
+            target.reclaimed.increment(reclaimed.size());
+            target.handoff = handoffs.submit(() -> handOver(streamKey, target, reclaimed));
+        }
+    }
+
+    /**
+     * Run the handler of each reclaimed record; once it returns, the record is in flight or done
+     */
+    private void handOver(String streamKey, ReclaimTarget target, List<MapRecord<String, Object, Object>> records) {
+        for (MapRecord<String, Object, Object> record : records) {
+            try {
+                target.processor.process(record);
+            } catch (Exception e) {
+                log.error("Failed to re-process record {} from stream '{}': {}", record.getId(), streamKey, e.getMessage());
+            } finally {
+                target.handingOff.remove(record.getId());
+            }
+        }
+    }
+
+    /**
+     * Reset the idle time of records in flight or being handed over on this node, so they are not
+     * reclaimed
+     */
+    private void refreshInFlight(String streamKey, ReclaimTarget target) {
+        Set<RecordId> held = new HashSet<>(target.inFlight);
+        held.addAll(target.handingOff);
+        RecordId[] ids = held.toArray(new RecordId[0]);
+        byte[] key = RedisSerializer.string().serialize(streamKey);
+
+        for (int from = 0; from < ids.length; from += REFRESH_CHUNK_SIZE) {
+            RecordId[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + REFRESH_CHUNK_SIZE));
+            // Ids no longer pending (acknowledged meanwhile) are ignored by XCLAIM
+            redisTemplate.execute((RedisCallback<List<RecordId>>) connection -> connection.streamCommands()
+                    .xClaimJustId(key, consumerGroup, consumerName, XClaimOptions.minIdle(Duration.ZERO).ids(chunk)));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ClaimedMessages<byte[], byte[]> autoClaim(String streamKey, String cursor) {
+        byte[] key = RedisSerializer.string().serialize(streamKey);
+        XAutoClaimArgs<byte[]> args = XAutoClaimArgs.Builder.<byte[]>xautoclaim(
+                        io.lettuce.core.Consumer.from(RedisSerializer.string().serialize(consumerGroup),
+                                RedisSerializer.string().serialize(consumerName)),
+                        Duration.ofMillis(minIdleMs), cursor)
+                .count(batchSize);
+
+        // Spring Data Redis has no XAUTOCLAIM yet, so this goes to Lettuce directly
+        return redisTemplate.execute((RedisCallback<ClaimedMessages<byte[], byte[]>>) connection ->
+                LettuceFutures.awaitOrCancel(
+                        ((RedisClusterAsyncCommands<byte[], byte[]>) connection.getNativeConnection()).xautoclaim(key, args),
+                        10, TimeUnit.SECONDS));
+    }
+
+    private Map<RecordId, Long> deliveryCounts(String streamKey, List<StreamMessage<byte[], byte[]>> messages) {
+        // Claimed ids are ascending; in-flight records of this consumer may sit between them
+        PendingMessages pending = redisTemplate.opsForStream().pending(streamKey,
+                Consumer.from(consumerGroup, consumerName),
+                Range.closed(messages.get(0).getId(), messages.get(messages.size() - 1).getId()),
+                messages.size() + targets.get(streamKey).inFlight.size() + targets.get(streamKey).handingOff.size());
+
+        Map<RecordId, Long> counts = new HashMap<>();
+        for (PendingMessage message : pending) {
+            counts.put(message.getId(), message.getTotalDeliveryCount());
+        }
+        return counts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MapRecord<String, Object, Object> toRecord(String streamKey, StreamMessage<byte[], byte[]> message) {
+        RedisSerializer<Object> hashKeySerializer = (RedisSerializer<Object>) redisTemplate.getHashKeySerializer();
+        RedisSerializer<Object> hashValueSerializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+
+        // Deserialized as the stream reader does, so the handler sees the same values
+        Map<Object, Object> value = new HashMap<>();
+        message.getBody().forEach((field, raw) ->
+                value.put(hashKeySerializer.deserialize(field), hashValueSerializer.deserialize(raw)));
+        return StreamRecords.newRecord().in(streamKey).withId(RecordId.of(message.getId())).ofMap(value);
+    }
+
+    private void moveToDeadLetter(String streamKey, MapRecord<String, Object, Object> record) {
+        String deadLetterStream = streamKey + deadLetterSuffix;
+
+        // Keep the original fields as-is; the "_" prefix keeps the metadata out of the event payload
+        Map<Object, Object> value = new HashMap<>(record.getValue());
+        value.put("_sourceStream", streamKey);
+        value.put("_sourceId", record.getId().getValue());
+        value.put("_failedAt", System.currentTimeMillis());
+
+        redisTemplate.opsForStream().add(StreamRecords.newRecord().in(deadLetterStream).ofMap(value));
+        streamAcknowledger.acknowledge(streamKey, record.getId());
+
+        log.warn("Moved record {} from stream '{}' to dead-letter stream '{}' after {} deliveries",
+                record.getId(), streamKey, deadLetterStream, maxDeliveries);
+    }
+
+    private static final class ReclaimTarget {
+        private final RecordProcessor processor;
+        private final Set<RecordId> inFlight;
+        private final Counter reclaimed;
+        private final Counter deadLettered;
+        // Claimed records whose handler has not been called yet
+        private final Set<RecordId> handingOff = ConcurrentHashMap.newKeySet();
+        // XAUTOCLAIM cursor and the last handover; only the scheduler thread touches them
+        private String cursor = "0-0";
+        private Future<?> handoff;
+
+        private ReclaimTarget(RecordProcessor processor, Set<RecordId> inFlight, Counter reclaimed, Counter deadLettered) {
+            this.processor = processor;
+            this.inFlight = inFlight;
+            this.reclaimed = reclaimed;
+            this.deadLettered = deadLettered;
+        }
+    }
+}
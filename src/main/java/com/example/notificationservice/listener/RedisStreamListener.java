@@ -1,5 +1,6 @@
 package com.example.notificationservice.listener;
 
+import com.example.notificationservice.dto.BulkNotificationRequest;
 import com.example.notificationservice.enums.NotificationChannel;
 import com.example.notificationservice.event.inbound.AssessmentPublishedEvent;
 import com.example.notificationservice.event.inbound.ProctoringViolationEvent;
@@ -7,21 +8,25 @@ import com.example.notificationservice.event.inbound.SessionCompletedEvent;
 import com.example.notificationservice.event.inbound.UserRegisteredEvent;
 import com.example.notificationservice.service.NotificationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.stream.StreamMessageListenerContainer;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer.StreamMessageListenerContainerOptions;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 @RequiredArgsConstructor
@@ -31,6 +36,9 @@ public class RedisStreamListener {
     private final NotificationService notificationService;
     private final RedisTemplate<String, Object> redisTemplate;
     private final ObjectMapper objectMapper;
+    private final StreamAcknowledger streamAcknowledger;
+    private final PendingMessageReclaimer pendingMessageReclaimer;
+    private final MeterRegistry meterRegistry;
 
     @Value("${app.redis.streams.user-events}")
     private String userEventsStream;
@@ -47,7 +55,39 @@ public class RedisStreamListener {
     @Value("${app.redis.consumer.name}")
     private String consumerName;
 
-    private volatile boolean running = true;
+    @Value("${app.redis.consumer.user-events.batch-size:10}")
+    private int userEventsBatchSize;
+
+    @Value("${app.redis.consumer.user-events.block-timeout-ms:2000}")
+    private long userEventsBlockTimeoutMs;
+
+    @Value("${app.redis.consumer.user-events.lanes:4}")
+    private int userEventsLanes;
+
+    @Value("${app.redis.consumer.assessment-events.batch-size:20}")
+    private int assessmentEventsBatchSize;
+
+    @Value("${app.redis.consumer.assessment-events.block-timeout-ms:2000}")
+    private long assessmentEventsBlockTimeoutMs;
+
+    @Value("${app.redis.consumer.assessment-events.lanes:16}")
+    private int assessmentEventsLanes;
+
+    @Value("${app.redis.consumer.proctoring-events.batch-size:10}")
+    private int proctoringEventsBatchSize;
+
+    @Value("${app.redis.consumer.proctoring-events.block-timeout-ms:500}")
+    private long proctoringEventsBlockTimeoutMs;
+
+    @Value("${app.redis.consumer.proctoring-events.lanes:4}")
+    private int proctoringEventsLanes;
+
+    @Value("${app.redis.consumer.lane-queue-capacity:1000}")
+    private int laneQueueCapacity;
+
+    private final List<StreamMessageListenerContainer<String, MapRecord<String, Object, Object>>> containers =
+            new ArrayList<>();
+    private final List<UserLaneDispatcher> dispatchers = new ArrayList<>();
 
     @PostConstruct
     public void initialize() {
@@ -56,64 +96,110 @@ public class RedisStreamListener {
         createConsumerGroupIfNotExists(assessmentEventsStream);
         createConsumerGroupIfNotExists(proctoringEventsStream);
 
+        // One long-running blocking reader per stream, each with its own recipient lanes,
+        // so a busy stream can never delay delivery on another one
+        startConsumer(userEventsStream, "user",
+                userEventsBatchSize, userEventsBlockTimeoutMs, userEventsLanes,
+                this::handleUserEvent);
+        startConsumer(assessmentEventsStream, "assessment",
+                assessmentEventsBatchSize, assessmentEventsBlockTimeoutMs, assessmentEventsLanes,
+                this::handleAssessmentEvent);
+        startConsumer(proctoringEventsStream, "proctoring",
+                proctoringEventsBatchSize, proctoringEventsBlockTimeoutMs, proctoringEventsLanes,
+                this::handleProctoringEvent);
+
         log.info("Redis Stream Listener initialized for streams: {}, {}, {}",
                 userEventsStream, assessmentEventsStream, proctoringEventsStream);
     }
 
     @PreDestroy
     public void shutdown() {
-        running = false;
         log.info("Redis Stream Listener shutting down...");
+        containers.forEach(StreamMessageListenerContainer::stop);
+        dispatchers.forEach(dispatcher -> dispatcher.shutdown(30_000));
     }
 
     /**
-     * Poll messages from all streams every second
+     * Start a dedicated consumer for a stream.
+     * The container keeps one XREADGROUP outstanding at all times on its own reader thread.
+     * The reader parses each record and queues the per-recipient work on the stream's lanes,
+     * so records are dispatched in stream order and a recipient's notifications stay ordered.
+     * A record is acknowledged once all of its work has completed.
      */
-    @Scheduled(fixedDelay = 1000)
-    public void pollMessages() {
-        if (!running) {
-            return;
-        }
+    @SuppressWarnings("unchecked")
+    private void startConsumer(String streamKey, String name, int batchSize, long blockTimeoutMs,
+            int laneCount, MessageHandler handler) {
+        UserLaneDispatcher lanes = new UserLaneDispatcher(name, laneCount, laneQueueCapacity, meterRegistry);
+        dispatchers.add(lanes);
+
+        // One XACK per read batch instead of one per record
+        streamAcknowledger.register(streamKey, batchSize);
+
+        // Read with the same serializers as redisTemplate so records look exactly like before
+        StreamMessageListenerContainerOptions<String, MapRecord<String, Object, Object>> options =
+                StreamMessageListenerContainerOptions.builder()
+                        .batchSize(batchSize)
+                        .pollTimeout(Duration.ofMillis(blockTimeoutMs))
+                        .executor(new SimpleAsyncTaskExecutor("stream-" + name + "-reader-"))
+                        .keySerializer(RedisSerializer.string())
+                        .hashKeySerializer((RedisSerializer<Object>) redisTemplate.getHashKeySerializer())
+                        .hashValueSerializer((RedisSerializer<Object>) redisTemplate.getHashValueSerializer())
+                        .errorHandler(e -> log.error("Error reading from stream '{}': {}", streamKey, e.getMessage()))
+                        .build();
+
+        // Records that fail here stay pending and are picked up again by the reclaimer; registered
+        // before reading starts, since the reclaimer also tracks which records are in flight
+        pendingMessageReclaimer.register(streamKey,
+                message -> processMessage(streamKey, message, handler, lanes));
+
+        StreamMessageListenerContainer<String, MapRecord<String, Object, Object>> container =
+                StreamMessageListenerContainer.create(redisTemplate.getRequiredConnectionFactory(), options);
+
+        container.register(
+                StreamMessageListenerContainer.StreamReadRequest
+                        .builder(StreamOffset.create(streamKey, ReadOffset.lastConsumed()))
+                        .consumer(Consumer.from(consumerGroup, consumerName))
+                        .autoAcknowledge(false)
+                        // Keep the subscription alive across transient Redis errors
+                        .cancelOnError(e -> false)
+                        .build(),
+                message -> processMessage(streamKey, message, handler, lanes));
+
+        container.start();
+        containers.add(container);
+
+        log.info("Started consumer for stream '{}' (batch: {}, block: {}ms, lanes: {})",
+                streamKey, batchSize, blockTimeoutMs, laneCount);
+    }
 
-        try {
-            // Poll from each stream
-            pollFromStream(userEventsStream, this::handleUserEvent);
-            pollFromStream(assessmentEventsStream, this::handleAssessmentEvent);
-            pollFromStream(proctoringEventsStream, this::handleProctoringEvent);
-        } catch (Exception e) {
-            log.error("Error polling messages from Redis streams: {}", e.getMessage(), e);
+    private void processMessage(String streamKey, MapRecord<String, Object, Object> message,
+            MessageHandler handler, UserLaneDispatcher lanes) {
+        RecordId recordId = message.getId();
+        if (!pendingMessageReclaimer.markInFlight(streamKey, recordId)) {
+            log.debug("Message {} from stream '{}' is already being processed, skipping", recordId, streamKey);
+            return;
         }
-    }
 
-    private void pollFromStream(String streamKey, MessageHandler handler) {
         try {
-            // Read messages from the stream for this consumer group
-            List<MapRecord<String, Object, Object>> messages = redisTemplate.opsForStream()
-                    .read(
-                            Consumer.from(consumerGroup, consumerName),
-                            StreamReadOptions.empty().count(10).block(Duration.ofSeconds(1)),
-                            StreamOffset.create(streamKey, ReadOffset.lastConsumed()));
-
-            if (messages != null && !messages.isEmpty()) {
-                for (MapRecord<String, Object, Object> message : messages) {
-                    try {
-                        log.debug("Processing message from stream '{}': {}", streamKey, message.getId());
-
-                        // Convert map to object
-                        Map<Object, Object> value = message.getValue();
-                        handler.handle(value);
-
-                        // Acknowledge the message
-                        redisTemplate.opsForStream().acknowledge(consumerGroup, message);
-
-                    } catch (Exception e) {
-                        log.error("Error processing message from stream '{}': {}", streamKey, e.getMessage(), e);
-                    }
+            log.debug("Processing message from stream '{}': {}", streamKey, message.getId());
+
+            // Convert map to object
+            Map<Object, Object> value = message.getValue();
+            handler.handle(value, lanes).whenComplete((ignored, e) -> {
+                if (e == null) {
+                    // Queue the acknowledgement; it is sent together with the rest of the batch
+                    streamAcknowledger.acknowledge(streamKey, message.getId());
+                } else {
+                    // Not acknowledged: the record stays pending until the reclaimer retries it
+                    log.error("Error processing message {} from stream '{}': {}",
+                            message.getId(), streamKey, e.getMessage());
                 }
-            }
+                pendingMessageReclaimer.clearInFlight(streamKey, recordId);
+            });
         } catch (Exception e) {
-            // This is normal when no messages are available, don't log as error
-            log.trace("No messages available from stream '{}': {}", streamKey, e.getMessage());
+            pendingMessageReclaimer.clearInFlight(streamKey, recordId);
+            log.error("Error processing message {} from stream '{}': {}",
+                    message.getId(), streamKey, e.getMessage());
         }
     }
 
@@ -139,10 +225,10 @@ public class RedisStreamListener {
 
     @FunctionalInterface
     private interface MessageHandler {
-        void handle(Map<Object, Object> value) throws Exception;
+        CompletableFuture<Void> handle(Map<Object, Object> value, UserLaneDispatcher lanes) throws Exception;
     }
 
-    private void handleUserEvent(Map<Object, Object> value) {
+    private CompletableFuture<Void> handleUserEvent(Map<Object, Object> value, UserLaneDispatcher lanes) {
         try {
             // Convert map to clean Map<String, Object>
             log.debug("RAW Redis data: {}", value);
@@ -162,45 +248,43 @@ public class RedisStreamListener {
             data.put("firstName", event.getFirstName());
             data.put("lastName", event.getLastName());
 
-            notificationService.processNotification(
+            return lanes.submit(event.getUserId(), () -> notificationService.processNotification(
                     "user.registered",
                     event.getUserId(),
                     event.getEmail(),
                     data,
-                    List.of(NotificationChannel.EMAIL));
+                    List.of(NotificationChannel.EMAIL)));
         } catch (Exception e) {
             log.error("Failed to handle user event: {}", e.getMessage(), e);
+            throw e;
         }
     }
 
-    private void handleAssessmentEvent(Map<Object, Object> value) {
-        try {
-            log.debug("📩 Received assessment event, checking type...");
-            log.debug("Event keys: {}", value.keySet());
+    private CompletableFuture<Void> handleAssessmentEvent(Map<Object, Object> value, UserLaneDispatcher lanes) {
+        log.debug("📩 Received assessment event, checking type...");
+        log.debug("Event keys: {}", value.keySet());
 
-            // Check for nested assignedUsers keys (Redis flattens them)
-            boolean hasAssignedUsers = value.keySet().stream()
-                    .anyMatch(key -> key.toString().startsWith("assignedUsers"));
+        // Check for nested assignedUsers keys (Redis flattens them)
+        boolean hasAssignedUsers = value.keySet().stream()
+                .anyMatch(key -> key.toString().startsWith("assignedUsers"));
 
-            boolean hasSessionId = value.containsKey("sessionId");
+        boolean hasSessionId = value.containsKey("sessionId");
 
-            log.debug("hasAssignedUsers: {}, hasSessionId: {}", hasAssignedUsers, hasSessionId);
+        log.debug("hasAssignedUsers: {}, hasSessionId: {}", hasAssignedUsers, hasSessionId);
 
-            if (hasSessionId && !hasAssignedUsers) {
-                log.debug("→ Routing to handleSessionCompleted");
-                handleSessionCompleted(value);
-            } else if (hasAssignedUsers) {
-                log.debug("→ Routing to handleAssessmentPublished");
-                handleAssessmentPublished(value);
-            } else {
-                log.warn("⚠️ Unknown assessment event type. Keys: {}", value.keySet());
-            }
-        } catch (Exception e) {
-            log.error("❌ Failed to handle assessment event: {}", e.getMessage(), e);
+        if (hasSessionId && !hasAssignedUsers) {
+            log.debug("→ Routing to handleSessionCompleted");
+            return handleSessionCompleted(value, lanes);
+        } else if (hasAssignedUsers) {
+            log.debug("→ Routing to handleAssessmentPublished");
+            return handleAssessmentPublished(value, lanes);
+        } else {
+            log.warn("⚠️ Unknown assessment event type. Keys: {}", value.keySet());
+            return CompletableFuture.completedFuture(null);
         }
     }
 
-    private void handleSessionCompleted(Map<Object, Object> value) {
+    private CompletableFuture<Void> handleSessionCompleted(Map<Object, Object> value, UserLaneDispatcher lanes) {
         try {
             Map<String, Object> cleanedValue = cleanMap(value);
             SessionCompletedEvent event = objectMapper.convertValue(cleanedValue, SessionCompletedEvent.class);
@@ -214,18 +298,19 @@ public class RedisStreamListener {
             data.put("score", event.getScore());
             data.put("status", event.getStatus());
 
-            notificationService.processNotification(
+            return lanes.submit(event.getUserId(), () -> notificationService.processNotification(
                     "session.completed",
                     event.getUserId(),
                     event.getEmail(),
                     data,
-                    List.of(NotificationChannel.EMAIL));
+                    List.of(NotificationChannel.EMAIL)));
         } catch (Exception e) {
             log.error("Failed to handle session completed event: {}", e.getMessage(), e);
+            throw e;
         }
     }
 
-    private void handleAssessmentPublished(Map<Object, Object> value) {
+    private CompletableFuture<Void> handleAssessmentPublished(Map<Object, Object> value, UserLaneDispatcher lanes) {
         try {
             log.info("🔵 Starting to process assessment.published event");
 
@@ -247,13 +332,13 @@ public class RedisStreamListener {
                         event.getAssignedUsers() != null ? event.getAssignedUsers().size() : 0);
             } catch (Exception e) {
                 log.error("❌ Failed to parse AssessmentPublishedEvent from data: {}", cleanedValue, e);
-                return;
+                throw e;
             }
 
             // Validate event
             if (event.getAssignedUsers() == null || event.getAssignedUsers().isEmpty()) {
                 log.warn("⚠️ No assigned users in assessment event, skipping");
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             // Prepare template data
@@ -264,34 +349,36 @@ public class RedisStreamListener {
 
             log.info("Template data prepared: {}", data);
 
-            // Send notification to each assigned user
+            // Fan out to all assigned users as one bulk job instead of a notification per user
+            List<Integer> userIds = new ArrayList<>();
+            Map<Integer, Map<String, Object>> userSpecificData = new HashMap<>();
             for (AssessmentPublishedEvent.UserInfo user : event.getAssignedUsers()) {
-                try {
-                    log.info("📤 Sending notification to user: {} (ID: {})",
-                            user.getUsername(), user.getUserId());
-
-                    // Add username to data
-                    Map<String, Object> userData = new HashMap<>(data);
-                    userData.put("username", user.getUsername());
-
-                    notificationService.processNotification(
-                            "assessment.published",
-                            user.getUserId(),
-                            user.getEmail(),
-                            userData,
-                            List.of(NotificationChannel.PUSH, NotificationChannel.EMAIL));
-
-                    log.info("✅ Notification sent successfully to user: {}", user.getUserId());
-                } catch (Exception e) {
-                    log.error("❌ Failed to send notification to user {}: {}",
-                            user.getUserId(), e.getMessage(), e);
-                }
+                Map<String, Object> userData = new HashMap<>();
+                userData.put("username", user.getUsername());
+                userData.put("email", user.getEmail());
+
+                userIds.add(user.getUserId());
+                userSpecificData.put(user.getUserId(), userData);
             }
 
-            log.info("🟢 Completed processing assessment.published event");
+            BulkNotificationRequest request = BulkNotificationRequest.builder()
+                    .userIds(userIds)
+                    .type("assessment.published")
+                    .channels(List.of(NotificationChannel.PUSH, NotificationChannel.EMAIL))
+                    .commonData(data)
+                    .userSpecificData(userSpecificData)
+                    .build();
+
+            // Each lane runs the recipients that hash to it, so their notifications stay in order
+            // with the other events of the same recipients
+            NotificationService.BulkJob job = notificationService.prepareBulkNotification(request);
+            return lanes.submitPartitioned(userIds, job::run)
+                    .thenApply(ignored -> job.finish())
+                    .thenAccept(result -> log.info("🟢 Completed processing assessment.published event: {}", result));
 
         } catch (Exception e) {
             log.error("❌ Failed to handle assessment published event", e);
+            throw e;
         }
     }
 
@@ -342,7 +429,7 @@ public class RedisStreamListener {
         return result;
     }
 
-    private void handleProctoringEvent(Map<Object, Object> value) {
+    private CompletableFuture<Void> handleProctoringEvent(Map<Object, Object> value, UserLaneDispatcher lanes) {
         try {
             Map<String, Object> cleanedValue = cleanMap(value);
             ProctoringViolationEvent event = objectMapper.convertValue(cleanedValue, ProctoringViolationEvent.class);
@@ -358,19 +445,23 @@ public class RedisStreamListener {
             data.put("severity", event.getSeverity());
 
             if (event.getProctorIds() != null && !event.getProctorIds().isEmpty()) { // ← Added null check
+                List<CompletableFuture<Void>> deliveries = new ArrayList<>();
                 for (Integer proctorId : event.getProctorIds()) {
-                    notificationService.processNotification(
+                    deliveries.add(lanes.submit(proctorId, () -> notificationService.processNotification(
                             "proctoring.violation",
                             proctorId,
                             null,
                             data,
-                            List.of(NotificationChannel.PUSH, NotificationChannel.EMAIL));
+                            List.of(NotificationChannel.PUSH, NotificationChannel.EMAIL))));
                 }
+                return CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0]));
             } else {
                 log.warn("No proctor IDs found for proctoring violation event");
+                return CompletableFuture.completedFuture(null);
             }
         } catch (Exception e) {
             log.error("Failed to handle proctoring event: {}", e.getMessage(), e);
+            throw e;
         }
     }
 
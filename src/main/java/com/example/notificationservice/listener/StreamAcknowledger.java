@@ -0,0 +1,129 @@
+package com.example.notificationservice.listener;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects acknowledgements for handled stream records and sends them as one multi-ID XACK.
+ * A stream's buffer is flushed as soon as a full read batch worth of records has been handled,
+ * and on a short interval for the remainder. Only records whose handler completed are ever
+ * added, so failed records stay in the pending entries list.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StreamAcknowledger {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.redis.consumer.group-id}")
+    private String consumerGroup;
+
+    private final Map<String, PendingAcks> pendingAcks = new ConcurrentHashMap<>();
+
+    /**
+     * Register a stream; acks are flushed once {@code flushSize} of them are buffered
+     */
+    public void register(String streamKey, int flushSize) {
+        DistributionSummary acksPerRoundTrip = DistributionSummary.builder("notification.stream.acks")
+                .description("Records acknowledged per XACK round trip")
+                .baseUnit("acks")
+                .tag("stream", streamKey)
+                .register(meterRegistry);
+
+        pendingAcks.put(streamKey, new PendingAcks(flushSize, acksPerRoundTrip));
+    }
+
+    /**
+     * Buffer the acknowledgement of a successfully handled record
+     */
+    public void acknowledge(String streamKey, RecordId recordId) {
+        PendingAcks acks = pendingAcks.get(streamKey);
+        if (acks == null) {
+            throw new IllegalStateException("Stream not registered for acknowledgement: " + streamKey);
+        }
+
+        acks.queue.add(recordId);
+        if (acks.size.incrementAndGet() >= acks.flushSize) {
+            flush(streamKey, acks);
+        }
+    }
+
+    /**
+     * Send whatever is left in the buffers
+     */
+    @Scheduled(fixedDelayString = "${app.redis.consumer.ack-flush-interval-ms:100}")
+    public void flushAll() {
+        pendingAcks.forEach(this::flush);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushAll();
+    }
+
+    private void flush(String streamKey, PendingAcks acks) {
+        // A flush already in progress will pick up everything queued so far
+        if (!acks.flushing.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            List<RecordId> ids = new ArrayList<>();
+            RecordId id;
+            while ((id = acks.queue.poll()) != null) {
+                ids.add(id);
+            }
+
+            if (ids.isEmpty()) {
+                return;
+            }
+            acks.size.addAndGet(-ids.size());
+
+            try {
+                redisTemplate.opsForStream().acknowledge(streamKey, consumerGroup, ids.toArray(new RecordId[0]));
+                acks.acksPerRoundTrip.record(ids.size());
+                log.trace("Acknowledged {} records on stream '{}'", ids.size(), streamKey);
+            } catch (Exception e) {
+                // Put them back for the next flush; until then they are still pending in Redis
+                log.warn("Failed to acknowledge {} records on stream '{}': {}",
+                        ids.size(), streamKey, e.getMessage());
+                acks.queue.addAll(ids);
+                acks.size.addAndGet(ids.size());
+            }
+        } finally {
+            acks.flushing.set(false);
+        }
+    }
+
+    private static class PendingAcks {
+        private final Queue<RecordId> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean flushing = new AtomicBoolean();
+        private final int flushSize;
+        private final DistributionSummary acksPerRoundTrip;
+
+        private PendingAcks(int flushSize, DistributionSummary acksPerRoundTrip) {
+            this.flushSize = flushSize;
+            this.acksPerRoundTrip = acksPerRoundTrip;
+        }
+    }
+}
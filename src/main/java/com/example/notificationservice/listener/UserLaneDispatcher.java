@@ -0,0 +1,172 @@
+package com.example.notificationservice.listener;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs per-recipient work on a fixed number of ordered lanes.
+ * Work is routed by hashing the user id, so everything for one recipient runs in submission
+ * order on the same lane while different recipients are processed in parallel. Each lane is a
+ * bounded queue drained by its own virtual thread; submitting to a full lane blocks the caller,
+ * which pushes back on the stream reader.
+ */
+@Slf4j
+public class UserLaneDispatcher {
+
+    private final String name;
+    private final Lane[] lanes;
+    private volatile boolean running = true;
+
+    public UserLaneDispatcher(String name, int laneCount, int queueCapacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.lanes = new Lane[laneCount];
+
+        for (int i = 0; i < laneCount; i++) {
+            Lane lane = new Lane(new LinkedBlockingQueue<>(queueCapacity),
+                    Timer.builder("notification.lane.processing")
+                            .description("Time spent processing one task on a recipient lane")
+                            .tag("stream", name)
+                            .tag("lane", String.valueOf(i))
+                            .register(meterRegistry));
+
+            Gauge.builder("notification.lane.queue.depth", lane.queue, BlockingQueue::size)
+                    .description("Tasks waiting on a recipient lane")
+                    .tag("stream", name)
+                    .tag("lane", String.valueOf(i))
+                    .register(meterRegistry);
+
+            lanes[i] = lane;
+            lane.worker = Thread.ofVirtual()
+                    .name("lane-" + name + "-" + i)
+                    .start(() -> drain(lane));
+        }
+    }
+
+    /**
+     * Queue work for a recipient
+     *
+     * @return future completed once the work has run, exceptionally if it threw
+     */
+    public CompletableFuture<Void> submit(Integer userId, Runnable work) {
+        return submitToLane(laneFor(userId), work);
+    }
+
+    /**
+     * Queue work covering many recipients. The recipients are split by lane and each lane runs
+     * {@code work} for its own share when it gets to it, so the work stays in order with everything
+     * else queued for those recipients.
+     *
+     * @return future completed once every share has run, exceptionally if any of them threw
+     */
+    public CompletableFuture<Void> submitPartitioned(List<Integer> userIds, Consumer<List<Integer>> work) {
+        List<List<Integer>> shares = new ArrayList<>(lanes.length);
+        for (int i = 0; i < lanes.length; i++) {
+            shares.add(new ArrayList<>());
+        }
+        for (Integer userId : userIds) {
+            shares.get(laneFor(userId)).add(userId);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < lanes.length; i++) {
+            List<Integer> share = shares.get(i);
+            if (!share.isEmpty()) {
+                futures.add(submitToLane(i, () -> work.accept(share)));
+            }
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    private CompletableFuture<Void> submitToLane(int lane, Runnable work) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        if (!running) {
+            future.completeExceptionally(new IllegalStateException("Lane dispatcher " + name + " is shut down"));
+            return future;
+        }
+
+        try {
+            lanes[lane].queue.put(new LaneTask(work, future));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Stop accepting work and let the lanes finish what is already queued
+     */
+    public void shutdown(long timeoutMs) {
+        running = false;
+        long deadline = System.currentTimeMillis() + timeoutMs;
+
+        for (Lane lane : lanes) {
+            try {
+                lane.worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int laneFor(Integer userId) {
+        if (userId == null) {
+            return 0;
+        }
+        // Spread sequential ids before taking the modulus
+        return Math.floorMod(userId * 0x9E3779B9, lanes.length);
+    }
+
+    private void drain(Lane lane) {
+        while (running || !lane.queue.isEmpty()) {
+            LaneTask task;
+            try {
+                task = lane.queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (task == null) {
+                continue;
+            }
+
+            long start = System.nanoTime();
+            try {
+                task.work.run();
+                task.future.complete(null);
+            } catch (Throwable t) {
+                task.future.completeExceptionally(t);
+            } finally {
+                lane.processingTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+        log.debug("Lane worker {} stopped", Thread.currentThread().getName());
+    }
+
+    private static class Lane {
+        private final BlockingQueue<LaneTask> queue;
+        private final Timer processingTime;
+        private Thread worker;
+
+        private Lane(BlockingQueue<LaneTask> queue, Timer processingTime) {
+            this.queue = queue;
+            this.processingTime = processingTime;
+        }
+    }
+
+    private record LaneTask(Runnable work, CompletableFuture<Void> future) {
+    }
+}
@@ -1,14 +1,31 @@
 package com.example.notificationservice.repository;
 
 import com.example.notificationservice.entity.NotificationPreference;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface NotificationPreferenceRepository extends JpaRepository<NotificationPreference, UUID> {
     Optional<NotificationPreference> findByUserId(Integer userId);
     boolean existsByUserId(Integer userId);
+
+    /**
+     * Stream preferences of a batch of users with a single array parameter; read-only, so the
+     * entities are not dirty-checked. Must be consumed inside a transaction and closed.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(value = "SELECT * FROM notification_preferences WHERE user_id = ANY(:userIds)", nativeQuery = true)
+    Stream<NotificationPreference> streamByUserIds(@Param("userIds") Integer[] userIds);
 }
\ No newline at end of file
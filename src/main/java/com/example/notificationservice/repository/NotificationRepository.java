@@ -12,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,6 +31,29 @@ public interface NotificationRepository extends JpaRepository<Notification, UUID
     @Query("SELECT COUNT(n) FROM Notification n WHERE n.recipientId = :userId AND n.status = 'PENDING'")
     long countPendingNotificationsByUserId(@Param("userId") Integer userId);
 
+    /**
+     * Move a set of notifications to the same delivery state in one statement
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.status = :status, n.sentAt = :sentAt, n.errorMessage = :errorMessage, n.retryCount = :retryCount, n.updatedAt = CURRENT_TIMESTAMP WHERE n.id IN :ids")
+    int updateStatus(@Param("ids") Collection<UUID> ids, @Param("status") NotificationStatus status,
+            @Param("sentAt") Instant sentAt, @Param("errorMessage") String errorMessage,
+            @Param("retryCount") Integer retryCount);
+
+    /**
+     * Lock pending emails not claimed since {@code before}; rows locked by another node are skipped
+     */
+    @Query(value = "SELECT * FROM notifications WHERE status = 'PENDING' AND channel = 'EMAIL' AND updated_at < :before ORDER BY updated_at LIMIT :limit FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    List<Notification> lockPendingEmails(@Param("before") Instant before, @Param("limit") int limit);
+
+    /**
+     * Bump updated_at of notifications still pending, marking them as claimed
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.updatedAt = CURRENT_TIMESTAMP WHERE n.id IN :ids AND n.status = 'PENDING'")
+    int touch(@Param("ids") Collection<UUID> ids);
+
     // ===================== User Notification APIs =====================
 
     /**
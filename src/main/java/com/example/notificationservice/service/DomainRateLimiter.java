@@ -0,0 +1,154 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.config.EmailRateLimitProperties;
+import com.example.notificationservice.config.EmailRateLimitProperties.Limit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket and in-flight cap per recipient domain, so one provider throttling us does not
+ * hold back mail to everyone else. A domain answering with a temporary (4xx) SMTP error is paused
+ * for a while. Sent, deferred and 4xx counts are exported per configured domain; every other
+ * domain is tagged {@code other} to keep the number of series bounded.
+ */
+@Service
+@RequiredArgsConstructor
+public class DomainRateLimiter {
+
+    // How soon to look again when a domain is at its in-flight cap
+    private static final long CONCURRENCY_RETRY_MS = 200;
+
+    private static final String OTHER_DOMAINS = "other";
+
+    private final EmailRateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    // Buckets of domains not seen for a while are dropped and start full again
+    private final Cache<String, Bucket> buckets = Caffeine.newBuilder()
+            .expireAfterAccess(Duration.ofMinutes(10))
+            .build();
+    private final Map<String, DomainMeters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * Domain part of an address, lower-cased
+     */
+    public static String domainOf(String address) {
+        int at = address != null ? address.lastIndexOf('@') : -1;
+        return at >= 0 ? address.substring(at + 1).trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Take a token and an in-flight slot for one message to {@code domain}
+     *
+     * @return 0 when the message may go out now (call {@link #release} once it has), otherwise
+     *         milliseconds to wait before trying again
+     */
+    public long tryAcquire(String domain) {
+        long waitMs = bucket(domain).tryAcquire(System.nanoTime());
+        if (waitMs > 0) {
+            meters(domain).deferred().increment();
+        }
+        return waitMs;
+    }
+
+    /**
+     * Give back the in-flight slot of a message and record whether it was sent
+     */
+    public void release(String domain, boolean sent) {
+        bucket(domain).release();
+        if (sent) {
+            meters(domain).sent().increment();
+        }
+    }
+
+    /**
+     * Pause a domain after it answered with a temporary SMTP error
+     */
+    public void backOff(String domain) {
+        meters(domain).transientFailures().increment();
+        bucket(domain).pause(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(properties.getTransientFailureBackoffMs()));
+    }
+
+    private Bucket bucket(String domain) {
+        return buckets.get(domain, d -> new Bucket(properties.getDomains().getOrDefault(d, properties.getDefaults())));
+    }
+
+    private DomainMeters meters(String domain) {
+        String tag = properties.getDomains().containsKey(domain) ? domain : OTHER_DOMAINS;
+        return meters.computeIfAbsent(tag, t -> new DomainMeters(
+                Counter.builder("notification.email.domain.sent")
+                        .description("Emails accepted by the SMTP server")
+                        .tag("domain", t)
+                        .register(meterRegistry),
+                Counter.builder("notification.email.domain.deferred")
+                        .description("Sends postponed by the domain's rate or in-flight limit")
+                        .tag("domain", t)
+                        .register(meterRegistry),
+                Counter.builder("notification.email.domain.smtp4xx")
+                        .description("Temporary SMTP errors, each pausing the domain")
+                        .tag("domain", t)
+                        .register(meterRegistry)));
+    }
+
+    private record DomainMeters(Counter sent, Counter deferred, Counter transientFailures) {
+    }
+
+    // Package-private for tests, which drive it with their own clock
+    static final class Bucket {
+        private final double tokensPerNano;
+        private final int burst;
+        private final int maxConcurrent;
+
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+        private long pausedUntil = refilledAt;
+        private int inFlight;
+
+        Bucket(Limit limit) {
+            this.tokensPerNano = limit.getRatePerSecond() / TimeUnit.SECONDS.toNanos(1);
+            this.burst = Math.max(limit.getBurst(), 1);
+            this.maxConcurrent = Math.max(limit.getMaxConcurrent(), 1);
+            this.tokens = burst;
+        }
+
+        synchronized long tryAcquire(long now) {
+            if (now - pausedUntil < 0) {
+                return Math.max(TimeUnit.NANOSECONDS.toMillis(pausedUntil - now), 1);
+            }
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+
+            if (inFlight >= maxConcurrent) {
+                return CONCURRENCY_RETRY_MS;
+            }
+            if (tokens < 1) {
+                return Math.max((long) Math.ceil((1 - tokens) / tokensPerNano / 1_000_000), 1);
+            }
+            tokens -= 1;
+            inFlight++;
+            return 0;
+        }
+
+        synchronized void release() {
+            inFlight = Math.max(inFlight - 1, 0);
+        }
+
+        synchronized void pause(long now, long nanos) {
+            if (now + nanos - pausedUntil > 0) {
+                pausedUntil = now + nanos;
+            }
+            tokens = 0;
+            refilledAt = pausedUntil;
+        }
+    }
+}
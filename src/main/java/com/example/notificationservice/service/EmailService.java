@@ -1,23 +1,58 @@
 package com.example.notificationservice.service;
 
+import com.example.notificationservice.config.EmailRateLimitProperties;
+import com.example.notificationservice.util.AimdConcurrencyLimit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Sends notification emails. HTML emails are queued and sent in chunks by a few worker threads,
+ * each chunk going out as one {@code send(MimeMessage...)} over a single SMTP session; the result
+ * of every message completes its own future. Messages take their headers from one shared
+ * {@link MimeHeaderCache}, so only the recipient, subject and body are set per email.
+ * How many batches are in flight follows SMTP latency (AIMD) between {@code min-workers} and
+ * {@code workers}. When the queue is full the returned future fails with a
+ * {@link RejectedExecutionException}; the email is not sent and the caller decides whether to
+ * defer it. Each message also needs a token of its recipient domain ({@link DomainRateLimiter});
+ * messages over their domain's limit, or refused with a temporary 4xx error, are put back on the
+ * queue later, and handed back with a RejectedExecutionException once held for too long.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class EmailService {
 
     private final JavaMailSender mailSender;
+    private final MeterRegistry meterRegistry;
+    private final DomainRateLimiter domainRateLimiter;
+    private final EmailRateLimitProperties rateLimitProperties;
 
     @Value("${app.notification.email.from}")
     private String fromEmail;
@@ -25,39 +60,263 @@ public class EmailService {
     @Value("${app.notification.email.from-name}")
     private String fromName;
 
+    @Value("${app.notification.email.batch.size:50}")
+    private int batchSize;
+
+    @Value("${app.notification.email.batch.workers:4}")
+    private int workerCount;
+
+    @Value("${app.notification.email.batch.min-workers:1}")
+    private int minWorkerCount;
+
+    @Value("${app.notification.email.batch.latency-target-ms:500}")
+    private long latencyTargetMs;
+
+    @Value("${app.notification.email.batch.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<EmailJob> queue;
+    private AimdConcurrencyLimit concurrencyLimit;
+    private Counter rejectedCounter;
+    private final List<Thread> workers = new ArrayList<>();
+    // Puts deferred emails back on the queue once their domain may take them
+    private final ScheduledExecutorService deferrals =
+            Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("email-deferral").factory());
+    private volatile boolean running = true;
+
+    private MimeHeaderCache headers;
+
+    // holdsSlot is set while the job holds an in-flight slot of its domain, so the slot is given
+    // back exactly once whichever path ends the send
+    private record EmailJob(String to, String domain, String subject, String htmlContent,
+            long queuedAt, CompletableFuture<Boolean> result, AtomicBoolean holdsSlot) {
+    }
+
+    @PostConstruct
+    public void startWorkers() throws Exception {
+        headers = new MimeHeaderCache(fromEmail, fromName);
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        concurrencyLimit = new AimdConcurrencyLimit(Math.min(minWorkerCount, workerCount), workerCount, latencyTargetMs);
+
+        Gauge.builder("notification.email.queue.depth", queue, BlockingQueue::size)
+                .description("Emails waiting to be sent")
+                .register(meterRegistry);
+        Gauge.builder("notification.email.concurrency.limit", concurrencyLimit, AimdConcurrencyLimit::getLimit)
+                .description("Email batches allowed in flight at the current SMTP latency")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("notification.email.queue.rejected")
+                .description("Emails refused because the queue was full")
+                .register(meterRegistry);
+
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("email-batch-" + i).start(this::drain));
+        }
+    }
+
+    @PreDestroy
+    public void stopWorkers() throws InterruptedException {
+        running = false;
+        // Deferred emails are still PENDING in the database and get picked up from there
+        deferrals.shutdownNow();
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
     /**
-     * Send HTML email asynchronously
+     * Queue an HTML email for the next batch
      * @param to Recipient email address
      * @param subject Email subject
      * @param htmlContent HTML content
-     * @return CompletableFuture with success status
+     * @return CompletableFuture with success status; failed with RejectedExecutionException when the queue is full
      */
-    @Async("emailExecutor")
     public CompletableFuture<Boolean> sendEmail(String to, String subject, String htmlContent) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        EmailJob job = new EmailJob(to, DomainRateLimiter.domainOf(to), subject, htmlContent,
+                System.currentTimeMillis(), result, new AtomicBoolean());
+        if (!queue.offer(job)) {
+            rejectedCounter.increment();
+            log.debug("Email queue full ({}), not sending to: {}", queueCapacity, to);
+            result.completeExceptionally(new RejectedExecutionException("Email queue full"));
+        }
+        return result;
+    }
+
+    /**
+     * Free slots in the email queue
+     */
+    public int remainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    private void drain() {
+        List<EmailJob> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                EmailJob first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                admit(batch);
+                if (batch.isEmpty()) {
+                    continue;
+                }
+
+                long start = concurrencyLimit.acquire();
+                boolean success = false;
+                try {
+                    success = sendBatch(batch);
+                } finally {
+                    concurrencyLimit.release(start, batch.size(), success);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Stopped before sending: the emails stay PENDING and the spill drainer sends them
+                batch.forEach(job -> {
+                    releaseSlot(job, false);
+                    job.result().completeExceptionally(new RejectedExecutionException("Email worker stopped"));
+                });
+                return;
+            } catch (Exception e) {
+                log.error("❌ Email batch worker error: {}", e.getMessage(), e);
+                batch.forEach(job -> {
+                    releaseSlot(job, false);
+                    job.result().complete(false);
+                });
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Keep the jobs whose domain has a token and a free slot; defer the rest
+     */
+    private void admit(List<EmailJob> batch) {
+        batch.removeIf(job -> {
+            long waitMs = domainRateLimiter.tryAcquire(job.domain());
+            if (waitMs > 0) {
+                defer(job, waitMs);
+                return true;
+            }
+            job.holdsSlot().set(true);
+            return false;
+        });
+    }
+
+    private void releaseSlot(EmailJob job, boolean sent) {
+        if (job.holdsSlot().compareAndSet(true, false)) {
+            domainRateLimiter.release(job.domain(), sent);
+        }
+    }
+
+    /**
+     * Put a job back on the queue after {@code delayMs}. A job that would be held longer than
+     * max-hold-ms is rejected instead, leaving it to the spill drainer.
+     */
+    private void defer(EmailJob job, long delayMs) {
+        if (System.currentTimeMillis() + delayMs - job.queuedAt() > rateLimitProperties.getMaxHoldMs()) {
+            job.result().completeExceptionally(new RejectedExecutionException("Domain " + job.domain() + " is throttled"));
+            return;
+        }
         try {
-            log.info("Attempting to send email to: {}", to);
-            log.debug("Email config - From: {}, SMTP Host: {}", fromEmail,
-                    mailSender.toString());
+            deferrals.schedule(() -> {
+                if (!queue.offer(job)) {
+                    rejectedCounter.increment();
+                    job.result().completeExceptionally(new RejectedExecutionException("Email queue full"));
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            job.result().completeExceptionally(e);
+        }
+    }
 
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+    /**
+     * @return false when the batch failed as a whole (connection-level error)
+     */
+    private boolean sendBatch(List<EmailJob> batch) {
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        List<EmailJob> jobs = new ArrayList<>(batch.size());
 
-            helper.setFrom(fromEmail, fromName);
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
+        for (EmailJob job : batch) {
+            try {
+                messages.add(headers.create(mailSender::createMimeMessage, job.to(), job.subject(), job.htmlContent()));
+                jobs.add(job);
+            } catch (Exception e) {
+                log.error("❌ Failed to build email to {}: {}", job.to(), e.getMessage(), e);
+                releaseSlot(job, false);
+                job.result().complete(false);
+            }
+        }
 
-            mailSender.send(message);
-            log.info("✅ Email sent successfully to: {}", to);
-            return CompletableFuture.completedFuture(true);
+        if (messages.isEmpty()) {
+            return true;
+        }
 
-        } catch (MessagingException e) {
-            log.error("❌ MessagingException sending email to {}: {}", to, e.getMessage(), e);
-            return CompletableFuture.completedFuture(false);
+        Map<Object, Exception> failed = Map.of();
+        try {
+            mailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failed = e.getFailedMessages();
         } catch (Exception e) {
-            log.error("❌ Failed to send email to {}: {}", to, e.getMessage(), e);
-            return CompletableFuture.completedFuture(false);
+            log.error("❌ Failed to send batch of {} emails: {}", messages.size(), e.getMessage(), e);
+            jobs.forEach(job -> {
+                releaseSlot(job, false);
+                job.result().complete(false);
+            });
+            return false;
         }
+
+        for (int i = 0; i < jobs.size(); i++) {
+            EmailJob job = jobs.get(i);
+            Exception error = failed.get(messages.get(i));
+            releaseSlot(job, error == null);
+            if (error == null) {
+                log.info("✅ Email sent successfully to: {}", job.to());
+                job.result().complete(true);
+            } else if (isTemporaryFailure(error)) {
+                // Throttled by the recipient's provider: pause the domain and try again later
+                log.warn("⚠️ Temporary failure sending to {}, deferring: {}", job.to(), error.getMessage());
+                domainRateLimiter.backOff(job.domain());
+                defer(job, rateLimitProperties.getTransientFailureBackoffMs());
+            } else {
+                log.error("❌ Failed to send email to {}: {}", job.to(), error.getMessage());
+                job.result().complete(false);
+            }
+        }
+        log.debug("Sent batch of {} emails, {} failed", jobs.size(), failed.size());
+        // Every message failing means the server or the connection is in trouble
+        return failed.size() < jobs.size();
+    }
+
+    /**
+     * Whether the SMTP server answered with a 4xx code somewhere in the exception chain
+     */
+    private static boolean isTemporaryFailure(Exception error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            int code = t instanceof SMTPSendFailedException e ? e.getReturnCode()
+                    : t instanceof SMTPAddressFailedException e ? e.getReturnCode()
+                    : 0;
+            if (code >= 400 && code < 500) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MimeMessage createHtmlMessage(String to, String subject, String htmlContent) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+
+        helper.setFrom(fromEmail, fromName);
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText(htmlContent, true);
+        return message;
     }
 
     /**
@@ -100,15 +359,7 @@ public class EmailService {
         try {
             log.info("Sending email synchronously to: {}", to);
 
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail, fromName);
-            helper.setTo(to);
-            helper.setSubject(subject);
-            helper.setText(htmlContent, true);
-
-            mailSender.send(message);
+            mailSender.send(createHtmlMessage(to, subject, htmlContent));
             log.info("✅ Email sent synchronously to: {}", to);
             return true;
 
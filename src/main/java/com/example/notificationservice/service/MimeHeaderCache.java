@@ -0,0 +1,63 @@
+package com.example.notificationservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeUtility;
+
+import java.io.UnsupportedEncodingException;
+import java.util.function.Supplier;
+
+/**
+ * Headers shared by all HTML emails, encoded once: the From address with its encoded display name,
+ * the content type and the transfer encoding. One instance serves every template; encoded subjects
+ * are cached by subject text, as a template renders the same subject for most recipients. Messages
+ * are single-part {@code text/html}: nothing is attached or inlined, so the multipart wrapper only
+ * added a boundary and a nested body part to each email. With the transfer encoding set up front,
+ * JavaMail does not scan each body to pick one.
+ */
+public final class MimeHeaderCache {
+
+    private static final String CONTENT_TYPE = "text/html; charset=UTF-8";
+    private static final String TRANSFER_ENCODING = "quoted-printable";
+
+    private final InternetAddress from;
+
+    private final Cache<String, String> encodedSubjects = Caffeine.newBuilder()
+            .maximumSize(1000)
+            .build();
+
+    public MimeHeaderCache(String fromEmail, String fromName) throws UnsupportedEncodingException {
+        this.from = new InternetAddress(fromEmail, fromName, "UTF-8");
+    }
+
+    /**
+     * Build a message for one recipient with the pre-encoded headers
+     */
+    public MimeMessage create(Supplier<MimeMessage> messageFactory, String to, String subject, String htmlContent)
+            throws MessagingException {
+        MimeMessage message = messageFactory.get();
+
+        message.setFrom(from);
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(to));
+        message.setHeader("Subject", encodeSubject(subject));
+        message.setContent(htmlContent, CONTENT_TYPE);
+        message.setHeader("Content-Transfer-Encoding", TRANSFER_ENCODING);
+        return message;
+    }
+
+    private String encodeSubject(String subject) {
+        return encodedSubjects.get(subject != null ? subject : "", MimeHeaderCache::encode);
+    }
+
+    private static String encode(String subject) {
+        try {
+            return MimeUtility.fold(9, MimeUtility.encodeText(subject, "UTF-8", null));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported", e);
+        }
+    }
+}
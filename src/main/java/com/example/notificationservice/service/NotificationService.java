@@ -2,17 +2,20 @@ package com.example.notificationservice.service;
 
 import com.example.notificationservice.dto.BulkNotificationRequest;
 import com.example.notificationservice.entity.Notification;
-import com.example.notificationservice.entity.NotificationPreference;
 import com.example.notificationservice.entity.NotificationTemplate;
 import com.example.notificationservice.enums.NotificationChannel;
 import com.example.notificationservice.enums.NotificationStatus;
+import com.example.notificationservice.event.BaseEvent;
 import com.example.notificationservice.event.outbound.BulkNotificationCompletedEvent;
 import com.example.notificationservice.event.outbound.NotificationFailedEvent;
 import com.example.notificationservice.event.outbound.NotificationSentEvent;
-import com.example.notificationservice.repository.NotificationPreferenceRepository;
 import com.example.notificationservice.repository.NotificationRepository;
-import com.example.notificationservice.repository.NotificationTemplateRepository;
-import com.example.notificationservice.util.TemplateEngine;
+import com.example.notificationservice.service.TemplateRegistry.RegisteredTemplate;
+import com.example.notificationservice.util.CompiledTemplate;
+import com.example.notificationservice.util.TransactionHooks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -20,11 +23,17 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -32,12 +41,15 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class NotificationService {
 
     private final NotificationRepository notificationRepository;
-    private final NotificationTemplateRepository templateRepository;
-    private final NotificationPreferenceRepository preferenceRepository;
+    private final PreferenceCache preferenceCache;
     private final EmailService emailService;
     private final SseEmitterService sseEmitterService;
-    private final TemplateEngine templateEngine;
+    private final TemplateRegistry templateRegistry;
     private final RedisStreamService redisStreamService;
+    private final NotificationStatusBuffer statusBuffer;
+    private final OutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
 
     @Value("${app.notification.retry.max-attempts}")
     private int maxRetryAttempts;
@@ -45,6 +57,34 @@ public class NotificationService {
     @Value("${app.redis.streams.notification-events}")
     private String notificationEventsStream;
 
+    @Value("${app.notification.bulk.chunk-size:500}")
+    private int bulkChunkSize;
+
+    @Value("${app.notification.email.spill.lease-ms:120000}")
+    private long spillLeaseMs;
+
+    @Value("${app.notification.email.spill.drain-batch-size:500}")
+    private int spillDrainBatchSize;
+
+    // Ids per UPDATE when renewing the lease of queued emails
+    private static final int LEASE_RENEW_CHUNK_SIZE = 1000;
+
+    // Emails handed to the email service by this node and not finished yet, sent or deferred
+    private final Set<UUID> queuedEmails = ConcurrentHashMap.newKeySet();
+
+    private Counter spilledCounter;
+    private Counter drainedCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        spilledCounter = Counter.builder("notification.email.spilled")
+                .description("Emails left pending in the database because the send queue was full")
+                .register(meterRegistry);
+        drainedCounter = Counter.builder("notification.email.spill.drained")
+                .description("Pending emails picked up from the database and queued for sending")
+                .register(meterRegistry);
+    }
+
     /**
      * Process single notification for a user
      */
@@ -56,36 +96,37 @@ public class NotificationService {
                 eventType, userId, email, channels);
 
         // Check user preferences
-        Optional<NotificationPreference> preference = preferenceRepository.findByUserId(userId);
+        PreferenceSnapshot preference = preferenceCache.get(userId).orElse(null);
+        PreferenceSnapshot.EventType preferenceEventType = PreferenceSnapshot.eventType(eventType);
 
-        // Create notification record and send through appropriate channels
+        // Create notification records and send through appropriate channels
+        List<Notification> notifications = new ArrayList<>(channels.size());
         for (NotificationChannel channel : channels) {
-            if (shouldSendToChannel(preference, channel, eventType)) {
+            if (shouldSendToChannel(preference, channel, preferenceEventType)) {
                 log.info("Sending notification via channel: {}", channel);
 
-                // Get channel-specific template
-                String templateName = mapEventToTemplate(eventType, channel);
-                Optional<NotificationTemplate> templateOpt = templateRepository.findByName(templateName);
+                // Get channel-specific template from the registry
+                Optional<RegisteredTemplate> templateOpt = templateRegistry.resolve(eventType, channel);
 
                 if (templateOpt.isEmpty()) {
                     log.error("❌ Template not found for event type: {} channel: {} (template name: {})",
-                            eventType, channel, templateName);
+                            eventType, channel, templateRegistry.templateName(eventType, channel));
                     continue;
                 }
 
-                NotificationTemplate template = templateOpt.get();
-                log.debug("Found template: {} for event type: {} channel: {}", templateName, eventType, channel);
+                RegisteredTemplate registered = templateOpt.get();
+                NotificationTemplate template = registered.template();
+                log.debug("Found template: {} for event type: {} channel: {}", template.getName(), eventType, channel);
 
-                // Validate template data
-                if (!templateEngine.validateTemplateData(template.getBody(), data)) {
-                    log.warn("⚠️ Missing required template variables for template: {}", templateName);
+                // Process content with the compiled template; missing variables come out of the same pass
+                CompiledTemplate.Rendered content = registered.body().render(data);
+                if (!content.isComplete()) {
+                    log.warn("⚠️ Missing required template variables for template: {} {}",
+                            template.getName(), content.missingVariables());
                 }
 
-                // Process content with template engine
-                String processedContent = templateEngine.processTemplate(template.getBody(), data);
-                String processedSubject = template.getSubject() != null
-                        ? templateEngine.processTemplate(template.getSubject(), data)
-                        : "";
+                String processedContent = content.text();
+                String processedSubject = registered.subject().render(data).text();
 
                 log.debug("Processed subject: {}", processedSubject);
 
@@ -100,175 +141,372 @@ public class NotificationService {
                         .status(NotificationStatus.PENDING)
                         .build();
 
-                Notification saved = notificationRepository.save(notification);
-                sendNotification(saved);
+                notifications.add(notification);
             } else {
                 log.info("Skipping channel {} due to user preferences", channel);
             }
         }
+
+        persistAndSend(notifications);
     }
 
     /**
-     * Process bulk notifications for multiple users
+     * Process bulk notifications for multiple users, off the caller's thread
      */
     @Async("notificationExecutor")
-    @Transactional
     public CompletableFuture<Map<String, Integer>> processBulkNotification(BulkNotificationRequest request) {
-        log.info("Processing bulk notification for {} users, type: {}", request.getUserIds().size(), request.getType());
+        BulkJob job = prepareBulkNotification(request);
+        job.run(request.getUserIds());
+        return CompletableFuture.completedFuture(job.finish());
+    }
 
-        String batchId = UUID.randomUUID().toString();
-        AtomicInteger successCount = new AtomicInteger(0);
-        AtomicInteger failedCount = new AtomicInteger(0);
+    /**
+     * Prepare a bulk notification for multiple users.
+     * Templates are resolved once per channel and rendered against the common data once, leaving
+     * only the per-user variables to fill in per recipient. The recipients may then be run in
+     * several parts, e.g. one per recipient lane, followed by one {@link BulkJob#finish()}.
+     */
+    public BulkJob prepareBulkNotification(BulkNotificationRequest request) {
+        log.info("Processing bulk notification for {} users, type: {}", request.getUserIds().size(), request.getType());
 
-        // Get template
-        String templateName = mapEventToTemplate(request.getType(), NotificationChannel.EMAIL);
-        Optional<NotificationTemplate> templateOpt = templateRepository.findByName(templateName);
+        Map<String, Object> commonData = request.getCommonData() != null ? request.getCommonData() : Map.of();
+        Map<Integer, Map<String, Object>> userSpecificData = request.getUserSpecificData() != null
+                ? request.getUserSpecificData()
+                : Map.of();
+
+        // Variables any recipient overrides stay open; everything else is filled in from commonData
+        Set<String> perUserVariables = new HashSet<>();
+        userSpecificData.values().forEach(data -> perUserVariables.addAll(data.keySet()));
+
+        // Get channel-specific templates once for the whole batch
+        Map<NotificationChannel, RegisteredTemplate> templates = new EnumMap<>(NotificationChannel.class);
+        for (NotificationChannel channel : request.getChannels()) {
+            templateRegistry.resolve(request.getType(), channel).ifPresentOrElse(
+                    registered -> templates.put(channel, new RegisteredTemplate(registered.template(),
+                            registered.body().partial(commonData, perUserVariables),
+                            registered.subject().partial(commonData, perUserVariables))),
+                    () -> log.error("❌ Template not found for event type: {} channel: {} (template name: {})",
+                            request.getType(), channel, templateRegistry.templateName(request.getType(), channel)));
+        }
 
-        if (templateOpt.isEmpty()) {
+        if (templates.isEmpty()) {
             log.error("Template not found for notification type: {}", request.getType());
-            return CompletableFuture.completedFuture(Map.of(
-                    "total", request.getUserIds().size(),
-                    "success", 0,
-                    "failed", request.getUserIds().size()));
         }
+        return new BulkJob(request.getType(), request.getUserIds().size(), commonData, userSpecificData, templates);
+    }
 
-        NotificationTemplate template = templateOpt.get();
+    /**
+     * One bulk notification. Recipients are rendered in parallel and persisted chunk by chunk, each
+     * chunk in a transaction of its own: its pushes and emails go out and its progress event is
+     * published once it has committed, and a failed chunk only loses its own recipients.
+     * Preferences are loaded with one IN query per chunk.
+     */
+    public final class BulkJob {
+
+        private final String batchId = UUID.randomUUID().toString();
+        private final String type;
+        private final int total;
+        private final Map<String, Object> commonData;
+        private final Map<Integer, Map<String, Object>> userSpecificData;
+        private final Map<NotificationChannel, RegisteredTemplate> templates;
+        private final PreferenceSnapshot.EventType preferenceEventType;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicInteger successCount = new AtomicInteger();
+        private final AtomicInteger failedCount = new AtomicInteger();
+
+        private BulkJob(String type, int total, Map<String, Object> commonData,
+                Map<Integer, Map<String, Object>> userSpecificData, Map<NotificationChannel, RegisteredTemplate> templates) {
+            this.type = type;
+            this.total = total;
+            this.commonData = commonData;
+            this.userSpecificData = userSpecificData;
+            this.templates = templates;
+            this.preferenceEventType = PreferenceSnapshot.eventType(type);
+        }
 
-        // Process each user
-        for (Integer userId : request.getUserIds()) {
-            try {
-                // Merge common data with user-specific data
-                Map<String, Object> userData = new HashMap<>();
-                if (request.getCommonData() != null) {
-                    userData.putAll(request.getCommonData());
-                }
-                if (request.getUserSpecificData() != null && request.getUserSpecificData().containsKey(userId)) {
-                    userData.putAll(request.getUserSpecificData().get(userId));
-                }
+        /**
+         * Notify some of the job's recipients; may be called concurrently for disjoint parts
+         */
+        public void run(List<Integer> userIds) {
+            if (templates.isEmpty()) {
+                failedCount.addAndGet(userIds.size());
+                processed.addAndGet(userIds.size());
+                return;
+            }
 
-                // Get user preferences
-                Optional<NotificationPreference> preference = preferenceRepository.findByUserId(userId);
-
-                // Get user email
-                String email = userData.get("email") != null ? userData.get("email").toString() : null;
-
-                // Process template
-                String processedContent = templateEngine.processTemplate(template.getBody(), userData);
-                String processedSubject = template.getSubject() != null
-                        ? templateEngine.processTemplate(template.getSubject(), userData)
-                        : "";
-
-                // Send through requested channels
-                for (NotificationChannel channel : request.getChannels()) {
-                    if (shouldSendToChannel(preference, channel, request.getType())) {
-                        Notification notification = Notification.builder()
-                                .recipientId(userId)
-                                .recipientEmail(email)
-                                .type(request.getType())
-                                .subject(processedSubject)
-                                .content(processedContent)
-                                .channel(channel)
-                                .template(template)
-                                .status(NotificationStatus.PENDING)
-                                .build();
-
-                        Notification saved = notificationRepository.save(notification);
-                        sendNotification(saved);
-                    }
+            for (int from = 0; from < userIds.size(); from += bulkChunkSize) {
+                List<Integer> chunk = userIds.subList(from, Math.min(from + bulkChunkSize, userIds.size()));
+                runChunk(chunk);
+
+                int done = processed.addAndGet(chunk.size());
+                if (done < total) {
+                    publishBulkNotificationCompletedEvent(batchId, total, done,
+                            successCount.get(), failedCount.get(), type, false);
                 }
+            }
+        }
+
+        private void runChunk(List<Integer> chunk) {
+            // Only users missing from the cache are queried; aligned with the chunk
+            PreferenceSnapshot[] preferences = preferenceCache.getAll(chunk);
+            AtomicInteger renderFailed = new AtomicInteger();
+
+            // Rendering is pure CPU work, so the chunk is rendered in parallel
+            List<Notification> notifications = IntStream.range(0, chunk.size()).parallel()
+                    .boxed()
+                    .flatMap(index -> {
+                        Integer userId = chunk.get(index);
+                        try {
+                            return buildBulkNotifications(type, preferenceEventType, userId,
+                                    userSpecificData.getOrDefault(userId, Map.of()), commonData,
+                                    preferences[index], templates).stream();
+                        } catch (Exception e) {
+                            log.error("Failed to process notification for user {}: {}", userId, e.getMessage());
+                            renderFailed.incrementAndGet();
+                            return Stream.empty();
+                        }
+                    })
+                    .toList();
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> persistAndSend(notifications));
+                successCount.addAndGet(chunk.size() - renderFailed.get());
+                failedCount.addAndGet(renderFailed.get());
+            } catch (Exception e) {
+                log.error("❌ Failed to persist {} recipients of bulk notification {}: {}",
+                        chunk.size(), batchId, e.getMessage(), e);
+                failedCount.addAndGet(chunk.size());
+            }
+        }
+
+        /**
+         * Publish the completion event once every part has run
+         */
+        public Map<String, Integer> finish() {
+            Map<String, Integer> result = Map.of(
+                    "total", total,
+                    "success", successCount.get(),
+                    "failed", failedCount.get());
+
+            if (templates.isEmpty()) {
+                return result;
+            }
 
-                successCount.incrementAndGet();
+            try {
+                transactionTemplate.executeWithoutResult(status -> publishBulkNotificationCompletedEvent(batchId,
+                        total, processed.get(), successCount.get(), failedCount.get(), type, true));
             } catch (Exception e) {
-                log.error("Failed to process notification for user {}: {}", userId, e.getMessage());
-                failedCount.incrementAndGet();
+                // The notifications themselves are committed; running the job again would duplicate them
+                log.error("❌ Failed to record completion of bulk notification {}: {}", batchId, e.getMessage(), e);
             }
+
+            log.info("Bulk notification completed. Batch: {}, Total: {}, Success: {}, Failed: {}",
+                    batchId, total, successCount.get(), failedCount.get());
+            return result;
         }
+    }
 
-        // Publish bulk completion event
-        publishBulkNotificationCompletedEvent(batchId, request.getUserIds().size(),
-                successCount.get(), failedCount.get(), request.getType());
+    private List<Notification> buildBulkNotifications(String eventType, PreferenceSnapshot.EventType preferenceEventType, Integer userId,
+            Map<String, Object> userData, Map<String, Object> commonData, PreferenceSnapshot preference,
+            Map<NotificationChannel, RegisteredTemplate> templates) {
+        // Get user email; user-specific data wins over common data
+        Object emailValue = userData.containsKey("email") ? userData.get("email") : commonData.get("email");
+        String email = emailValue != null ? emailValue.toString() : null;
+
+        List<Notification> notifications = new ArrayList<>(templates.size());
+        for (Map.Entry<NotificationChannel, RegisteredTemplate> entry : templates.entrySet()) {
+            NotificationChannel channel = entry.getKey();
+            if (!shouldSendToChannel(preference, channel, preferenceEventType)) {
+                continue;
+            }
+
+            // Only the per-user holes of the pre-rendered template are left to fill
+            RegisteredTemplate template = entry.getValue();
+            CompiledTemplate.Rendered content = template.body().render(userData, commonData);
+            if (!content.isComplete()) {
+                log.warn("⚠️ Missing template variables {} for user {} in template: {}",
+                        content.missingVariables(), userId, template.template().getName());
+            }
 
-        Map<String, Integer> result = Map.of(
-                "total", request.getUserIds().size(),
-                "success", successCount.get(),
-                "failed", failedCount.get());
+            String processedContent = content.text();
+            String processedSubject = template.subject().render(userData, commonData).text();
+
+            notifications.add(Notification.builder()
+                    .recipientId(userId)
+                    .recipientEmail(email)
+                    .type(eventType)
+                    .subject(processedSubject)
+                    .content(processedContent)
+                    .channel(channel)
+                    .template(template.template())
+                    .status(NotificationStatus.PENDING)
+                    .build());
+        }
+        return notifications;
+    }
 
-        log.info("Bulk notification completed. Batch: {}, Total: {}, Success: {}, Failed: {}",
-                batchId, request.getUserIds().size(), successCount.get(), failedCount.get());
+    /**
+     * Persist new notifications with a single write each and send them.
+     * Outcomes known up front go into the INSERT and their events into the outbox in the same
+     * transaction: pushes are stored as SENT, emails without an address as FAILED. Pushes and emails
+     * are only sent once the transaction has committed, so no client sees a notification that was
+     * rolled back. Emails report their outcome through the status buffer, pushes only when they fail.
+     */
+    private List<Notification> persistAndSend(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return notifications;
+        }
 
-        return CompletableFuture.completedFuture(result);
+        notifications.forEach(this::deliverSynchronously);
+        List<Notification> saved = notificationRepository.saveAll(notifications);
+
+        List<BaseEvent> outcomes = new ArrayList<>();
+        for (Notification notification : saved) {
+            if (notification.getStatus() != NotificationStatus.PENDING) {
+                outcomes.add(buildOutcomeEvent(notification));
+            }
+        }
+        outboxService.enqueueAll(notificationEventsStream, outcomes);
+
+        TransactionHooks.afterCommit(() -> saved.forEach(this::dispatch));
+        return saved;
     }
 
+    /**
+     * Re-send a notification that is already persisted (retries)
+     */
     @Async
     public void sendNotification(Notification notification) {
         try {
             log.info("Sending notification {} via channel: {}", notification.getId(), notification.getChannel());
-            boolean sent = false;
-
-            switch (notification.getChannel()) {
-                case EMAIL:
-                    if (notification.getRecipientEmail() != null) {
-                        log.info("Sending email to: {}", notification.getRecipientEmail());
-                        // Use CompletableFuture to handle async result
-                        emailService.sendEmail(
-                                notification.getRecipientEmail(),
-                                notification.getSubject(),
-                                notification.getContent()).thenAccept(result -> {
-                                    if (result) {
-                                        updateNotificationStatus(notification, NotificationStatus.SENT);
-                                        publishNotificationSentEvent(notification);
-                                    } else {
-                                        handleFailedNotification(notification, "Failed to send email");
-                                    }
-                                }).exceptionally(ex -> {
-                                    log.error("Email sending exception: {}", ex.getMessage());
-                                    handleFailedNotification(notification, ex.getMessage());
-                                    return null;
-                                });
-
-                        // Consider it sent for now (will be updated by callback)
-                        sent = true;
-                    } else {
-                        log.warn("Cannot send email notification: recipient email is null for notification {}",
-                                notification.getId());
-                        handleFailedNotification(notification, "Recipient email is null");
-                    }
-                    break;
-
-                case PUSH:
-                    log.info("Sending PUSH notification to user: {}", notification.getRecipientId());
-                    // Use SSE emitter service for real-time push delivery
-                    sent = sseEmitterService.sendToUser(
-                            notification.getRecipientId(),
-                            notification.getType(),
-                            notification.getContent());
-
-                    if (sent) {
-                        updateNotificationStatus(notification, NotificationStatus.SENT);
-                        publishNotificationSentEvent(notification);
-                    } else {
-                        // User not connected, but notification is saved - mark as pending for later
-                        // delivery
-                        log.info("User {} not connected, notification saved for later", notification.getRecipientId());
-                        updateNotificationStatus(notification, NotificationStatus.SENT);
-                        publishNotificationSentEvent(notification);
-                    }
-                    break;
-            }
 
+            notification.setStatus(NotificationStatus.PENDING);
+            deliverSynchronously(notification);
+            if (notification.getStatus() != NotificationStatus.PENDING) {
+                statusBuffer.record(notification, buildOutcomeEvent(notification));
+            }
+            dispatch(notification);
         } catch (Exception e) {
             log.error("Error sending notification: {}", e.getMessage(), e);
             handleFailedNotification(notification, e.getMessage());
         }
     }
 
+    /**
+     * Set the outcome known before sending: a push is SENT, as it is kept in the inbox whether or
+     * not the user is connected; an email without an address is FAILED. Other emails stay PENDING.
+     */
+    private void deliverSynchronously(Notification notification) {
+        switch (notification.getChannel()) {
+            case PUSH -> markSent(notification);
+            case EMAIL -> {
+                if (notification.getRecipientEmail() == null) {
+                    log.warn("Cannot send email notification: recipient email is null for notification {}",
+                            notification.getId());
+                    markFailed(notification, "Recipient email is null");
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a persisted notification: the SSE event of a push, or a pending email
+     */
+    private void dispatch(Notification notification) {
+        switch (notification.getChannel()) {
+            case PUSH -> {
+                if (notification.getStatus() == NotificationStatus.SENT) {
+                    sendPush(notification);
+                }
+            }
+            case EMAIL -> {
+                if (notification.getStatus() == NotificationStatus.PENDING) {
+                    sendEmail(notification);
+                }
+            }
+        }
+    }
+
+    private void sendPush(Notification notification) {
+        log.info("Sending PUSH notification {} to user: {}", notification.getId(), notification.getRecipientId());
+        try {
+            // Use SSE emitter service for real-time push delivery
+            boolean sent = sseEmitterService.sendToUser(
+                    notification.getRecipientId(),
+                    notification.getType(),
+                    notification.getContent());
+
+            if (!sent) {
+                // User not connected, but notification is saved and shows up in the inbox
+                log.info("User {} not connected, notification saved for later", notification.getRecipientId());
+            }
+        } catch (Exception e) {
+            // The row was stored as SENT; this is its only further write
+            log.error("Error sending PUSH notification: {}", e.getMessage(), e);
+            notification.setSentAt(null);
+            handleFailedNotification(notification, e.getMessage());
+        }
+    }
+
+    private void sendEmail(Notification notification) {
+        if (!queuedEmails.add(notification.getId())) {
+            // Already waiting in this node's queue; the drainer must not queue it twice
+            log.debug("Email notification {} is already queued", notification.getId());
+            return;
+        }
+        log.info("Sending email to: {}", notification.getRecipientEmail());
+        // Use CompletableFuture to handle async result
+        emailService.sendEmail(
+                notification.getRecipientEmail(),
+                notification.getSubject(),
+                notification.getContent()).whenComplete((result, ex) ->
+                        queuedEmails.remove(notification.getId())).thenAccept(result -> {
+                    if (result) {
+                        markSent(notification);
+                        statusBuffer.record(notification, buildOutcomeEvent(notification));
+                    } else {
+                        handleFailedNotification(notification, "Failed to send email");
+                    }
+                }).exceptionally(ex -> {
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    if (cause instanceof RejectedExecutionException) {
+                        // Not a delivery failure: the row stays as it is and is sent once the queue has room
+                        spilledCounter.increment();
+                        log.debug("Email queue full, deferring notification {}", notification.getId());
+                        return null;
+                    }
+                    log.error("Email sending exception: {}", ex.getMessage());
+                    handleFailedNotification(notification, ex.getMessage());
+                    return null;
+                });
+    }
+
     private void handleFailedNotification(Notification notification, String errorMessage) {
+        markFailed(notification, errorMessage);
+        statusBuffer.record(notification, buildOutcomeEvent(notification));
+    }
+
+    private void markSent(Notification notification) {
+        notification.setStatus(NotificationStatus.SENT);
+        notification.setSentAt(Instant.now());
+    }
+
+    private void markFailed(Notification notification, String errorMessage) {
         notification.setErrorMessage(errorMessage);
         notification.setRetryCount(notification.getRetryCount() + 1);
+        notification.setStatus(NotificationStatus.FAILED); // <-- always mark failed
+    }
 
-        boolean willRetry = notification.getRetryCount() < maxRetryAttempts;
+    /**
+     * Build the event describing the final status of a notification (sent or failed)
+     */
+    private BaseEvent buildOutcomeEvent(Notification notification) {
+        if (notification.getStatus() == NotificationStatus.SENT) {
+            log.info("✅ Notification {} status updated to: {}", notification.getId(), notification.getStatus());
+            return buildNotificationSentEvent(notification);
+        }
 
-        notification.setStatus(NotificationStatus.FAILED); // <-- always mark failed
+        boolean willRetry = notification.getRetryCount() < maxRetryAttempts;
 
         if (!willRetry) {
             log.error("❌ Notification {} permanently failed after {} attempts",
@@ -278,8 +516,7 @@ public class NotificationService {
                     notification.getId(), notification.getRetryCount());
         }
 
-        notificationRepository.save(notification);
-        publishNotificationFailedEvent(notification, willRetry);
+        return buildNotificationFailedEvent(notification, willRetry);
     }
 
     @Scheduled(fixedDelayString = "${app.notification.retry.delay-ms}")
@@ -298,90 +535,70 @@ public class NotificationService {
         }
     }
 
-    private void updateNotificationStatus(Notification notification, NotificationStatus status) {
-        notification.setStatus(status);
-        notification.setSentAt(Instant.now());
-        if (status == NotificationStatus.DELIVERED) {
-            notification.setDeliveredAt(Instant.now());
+    /**
+     * Queue pending emails that did not fit in the send queue, as many as it has room for.
+     * Claimed rows get a fresh updated_at so no other node or run picks them up again within the
+     * lease, and {@link #renewQueuedEmailLeases()} keeps it fresh while they wait in memory; an
+     * email whose node stopped renewing is claimed again once the lease runs out.
+     */
+    @Scheduled(fixedDelayString = "${app.notification.email.spill.drain-interval-ms:5000}")
+    public void drainSpilledEmails() {
+        int room = Math.min(emailService.remainingCapacity(), spillDrainBatchSize);
+        if (room == 0) {
+            return;
         }
-        notificationRepository.save(notification);
-        log.info("✅ Notification {} status updated to: {}", notification.getId(), status);
-    }
 
-    private boolean shouldSendToChannel(Optional<NotificationPreference> preference,
-            NotificationChannel channel, String eventType) {
-        if (preference.isEmpty()) {
-            log.debug("No preferences found, defaulting to enabled for channel: {}", channel);
-            return true;
-        }
+        try {
+            List<Notification> claimed = transactionTemplate.execute(status -> {
+                List<Notification> batch = notificationRepository.lockPendingEmails(
+                        Instant.now().minusMillis(spillLeaseMs), room);
+                if (!batch.isEmpty()) {
+                    notificationRepository.touch(batch.stream().map(Notification::getId).toList());
+                }
+                return batch;
+            });
 
-        NotificationPreference pref = preference.get();
+            if (claimed != null && !claimed.isEmpty()) {
+                log.info("Queueing {} pending emails from the database", claimed.size());
+                drainedCounter.increment(claimed.size());
+                claimed.forEach(this::sendEmail);
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to drain pending emails: {}", e.getMessage());
+        }
+    }
 
-        // 1. Check global master switch
-        if (Boolean.FALSE.equals(pref.getNotificationsEnabled())) {
-            log.debug("Global notifications disabled for user");
-            return false;
+    /**
+     * Keep the lease of every email this node still has queued or on hold, so other nodes' drainers
+     * leave them alone however long the queue takes
+     */
+    @Scheduled(fixedDelayString = "${app.notification.email.spill.lease-renew-interval-ms:30000}")
+    public void renewQueuedEmailLeases() {
+        if (queuedEmails.isEmpty()) {
+            return;
         }
 
-        // 2. Check specific category/type preferences
-        if (pref.getCategories() != null && pref.getCategories().containsKey(eventType)) {
-            Map<String, Boolean> typeSettings = pref.getCategories().get(eventType);
-
-            // Check specific channel setting
-            String channelKey = switch (channel) {
-                case EMAIL -> "emailEnabled";
-                case PUSH -> "pushEnabled";
-            };
-
-            if (typeSettings != null && typeSettings.containsKey(channelKey)) {
-                boolean specificEnabled = typeSettings.get(channelKey);
-                log.debug("Found specific preference for type '{}', channel '{}': {}",
-                        eventType, channel, specificEnabled);
-                return specificEnabled;
+        List<UUID> ids = List.copyOf(queuedEmails);
+        try {
+            for (int from = 0; from < ids.size(); from += LEASE_RENEW_CHUNK_SIZE) {
+                List<UUID> chunk = ids.subList(from, Math.min(from + LEASE_RENEW_CHUNK_SIZE, ids.size()));
+                transactionTemplate.executeWithoutResult(status -> notificationRepository.touch(chunk));
             }
+            log.trace("Renewed the lease of {} queued emails", ids.size());
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to renew the lease of queued emails: {}", e.getMessage());
         }
-
-        // 3. Fallback to global channel settings
-        boolean enabled = switch (channel) {
-            case EMAIL -> Boolean.TRUE.equals(pref.getEmailEnabled());
-            case PUSH -> Boolean.TRUE.equals(pref.getPushEnabled());
-        };
-
-        log.debug("Using global channel setting for '{}': {}", channel, enabled);
-        return enabled;
     }
 
     /**
-     * Map event type to template name based on channel.
-     * EMAIL channel uses _email suffix (HTML templates)
-     * PUSH channel uses _push suffix (plain text templates)
+     * Users without preferences get every channel; otherwise the compiled preference decides
      */
-    private String mapEventToTemplate(String eventType, NotificationChannel channel) {
-        String baseName = switch (eventType) {
-            case "user.registered" -> "welcome_user";
-            case "session.completed" -> "session_completion";
-            case "proctoring.violation" -> "proctoring_alert";
-            case "assessment.published" -> "new_assessment_assigned";
-            case "assessment.reminder" -> "assessment_reminder";
-            case "grade.available" -> "grade_available";
-            case "comment.feedback" -> "comment_feedback";
-            case "system.update" -> "system_update";
-            case "invite.student" -> "invite_student_to_group";
-            default -> eventType.replace(".", "_");
-        };
-
-        // Add channel-specific suffix
-        String suffix = switch (channel) {
-            case EMAIL -> "_email";
-            case PUSH -> "_push";
-        };
-
-        String templateName = baseName + suffix;
-        log.debug("Mapped event type '{}' + channel '{}' to template '{}'", eventType, channel, templateName);
-        return templateName;
+    private boolean shouldSendToChannel(PreferenceSnapshot preference, NotificationChannel channel,
+            PreferenceSnapshot.EventType eventType) {
+        return preference == null || preference.allows(eventType, channel);
     }
 
-    private void publishNotificationSentEvent(Notification notification) {
+    private NotificationSentEvent buildNotificationSentEvent(Notification notification) {
         NotificationSentEvent event = NotificationSentEvent.builder()
                 .notificationId(notification.getId())
                 .recipientId(notification.getRecipientId())
@@ -391,11 +608,10 @@ public class NotificationService {
                 .deliveryTime(Instant.now().toString())
                 .build();
         event.init();
-
-        redisStreamService.publish(notificationEventsStream, event);
+        return event;
     }
 
-    private void publishNotificationFailedEvent(Notification notification, boolean willRetry) {
+    private NotificationFailedEvent buildNotificationFailedEvent(Notification notification, boolean willRetry) {
         NotificationFailedEvent event = NotificationFailedEvent.builder()
                 .notificationId(notification.getId())
                 .recipientId(notification.getRecipientId())
@@ -405,21 +621,37 @@ public class NotificationService {
                 .willRetry(willRetry)
                 .build();
         event.init();
-
-        redisStreamService.publish(notificationEventsStream, event);
+        return event;
     }
 
-    private void publishBulkNotificationCompletedEvent(String batchId, int total, int success, int failed,
-            String type) {
+    private void publishBulkNotificationCompletedEvent(String batchId, int total, int processed, int success,
+            int failed, String type, boolean completed) {
         BulkNotificationCompletedEvent event = BulkNotificationCompletedEvent.builder()
                 .batchId(batchId)
                 .totalRecipients(total)
+                .processedRecipients(processed)
                 .successfulSent(success)
                 .failedSent(failed)
                 .notificationType(type)
+                .completed(completed)
                 .build();
         event.init();
 
-        redisStreamService.publish(notificationEventsStream, event);
+        if (completed) {
+            outboxService.enqueue(notificationEventsStream, event);
+            return;
+        }
+
+        // Progress updates are superseded by the next one, so they skip the outbox and the bulk job
+        // does not wait on Redis for them
+        try {
+            redisStreamService.publishAsync(notificationEventsStream, List.of(event)).exceptionally(e -> {
+                log.warn("⚠️ Failed to publish progress of bulk notification {}: {}", batchId, e.getMessage());
+                return null;
+            });
+        } catch (RejectedExecutionException e) {
+            // Executor saturated; skip this update rather than fail the job
+            log.debug("Skipped progress event of bulk notification {}: executor busy", batchId);
+        }
     }
-}
\ No newline at end of file
+}
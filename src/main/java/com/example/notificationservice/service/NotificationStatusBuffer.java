@@ -0,0 +1,137 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.entity.Notification;
+import com.example.notificationservice.enums.NotificationStatus;
+import com.example.notificationservice.event.BaseEvent;
+import com.example.notificationservice.repository.NotificationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Buffers status transitions of notifications that are already persisted (async email results,
+ * retries) and writes them as a few set-based UPDATEs per flush instead of one save per notification.
+ * Several transitions of the same notification between two flushes are coalesced into the last one.
+ * The outcome events of the transitions go to the outbox in the same transaction as the UPDATEs.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationStatusBuffer {
+
+    private static final int MAX_IDS_PER_UPDATE = 1000;
+
+    private final NotificationRepository notificationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxService outboxService;
+
+    @Value("${app.redis.streams.notification-events}")
+    private String notificationEventsStream;
+
+    // Latest pending transition per notification
+    private final Map<UUID, StatusUpdate> pending = new ConcurrentHashMap<>();
+
+    // Outcome events of the pending transitions; every one is published, not just the latest
+    private final Queue<BaseEvent> pendingEvents = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Queue the current status of a notification for writing, together with its outcome event
+     */
+    public void record(Notification notification, BaseEvent event) {
+        pendingEvents.add(event);
+        record(notification);
+    }
+
+    /**
+     * Queue the current status of a notification for writing
+     */
+    public void record(Notification notification) {
+        pending.put(notification.getId(), new StatusUpdate(
+                notification.getId(),
+                notification.getStatus(),
+                notification.getSentAt(),
+                notification.getErrorMessage(),
+                notification.getRetryCount()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.notification.status-flush-interval-ms:250}")
+    public void flush() {
+        Map<UUID, StatusUpdate> latest = new HashMap<>();
+        for (UUID id : pending.keySet()) {
+            StatusUpdate update = pending.remove(id);
+            if (update != null) {
+                latest.put(id, update);
+            }
+        }
+
+        List<BaseEvent> events = new ArrayList<>();
+        BaseEvent event;
+        while ((event = pendingEvents.poll()) != null) {
+            events.add(event);
+        }
+
+        if (latest.isEmpty() && events.isEmpty()) {
+            return;
+        }
+
+        // Notifications moving to the same state are written by one UPDATE ... WHERE id IN (...);
+        // sent_at of a group is the latest send time in it, which is at most one flush interval off
+        Map<TargetState, StatusGroup> groups = new LinkedHashMap<>();
+        for (StatusUpdate u : latest.values()) {
+            StatusGroup group = groups.computeIfAbsent(
+                    new TargetState(u.status(), u.errorMessage(), u.retryCount()), k -> new StatusGroup());
+            group.ids.add(u.id());
+            if (u.sentAt() != null && (group.sentAt == null || u.sentAt().isAfter(group.sentAt))) {
+                group.sentAt = u.sentAt();
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                groups.forEach(this::write);
+                outboxService.enqueueAll(notificationEventsStream, events);
+            });
+            log.debug("Flushed {} notification status updates in {} groups", latest.size(), groups.size());
+        } catch (Exception e) {
+            // Re-queue so the transitions are not lost; newer ones recorded meanwhile still win
+            log.error("Failed to flush {} notification status updates: {}", latest.size(), e.getMessage(), e);
+            latest.forEach(pending::putIfAbsent);
+            pendingEvents.addAll(events);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void write(TargetState target, StatusGroup group) {
+        List<UUID> ids = group.ids;
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_UPDATE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_UPDATE, ids.size()));
+            notificationRepository.updateStatus(chunk, target.status(), group.sentAt,
+                    target.errorMessage(), target.retryCount());
+        }
+    }
+
+    private record StatusUpdate(UUID id, NotificationStatus status, Instant sentAt,
+            String errorMessage, Integer retryCount) {
+    }
+
+    private record TargetState(NotificationStatus status, String errorMessage, Integer retryCount) {
+    }
+
+    private static class StatusGroup {
+        private final List<UUID> ids = new ArrayList<>();
+        private Instant sentAt;
+    }
+}
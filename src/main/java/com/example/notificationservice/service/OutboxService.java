@@ -0,0 +1,115 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.entity.OutboxEvent;
+import com.example.notificationservice.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Transactional outbox for outbound events.
+ * Events are stored in the same transaction as the notification rows they describe and relayed
+ * to their Redis stream by a scheduled job, so Redis is never on the database write path. An event
+ * is deleted only after its XADD succeeded, which makes publishing at-least-once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final RedisStreamService redisStreamService;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.notification.outbox.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Store an event for publishing; must be called inside the transaction that produced it
+     */
+    public void enqueue(String stream, Object event) {
+        outboxEventRepository.save(toOutboxEvent(stream, event));
+    }
+
+    /**
+     * Store several events for publishing with one batched insert
+     */
+    public void enqueueAll(String stream, List<?> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        outboxEventRepository.saveAll(events.stream().map(event -> toOutboxEvent(stream, event)).toList());
+    }
+
+    /**
+     * Drain the outbox to Redis, one pipelined batch per transaction, until it is empty
+     */
+    @Scheduled(fixedDelayString = "${app.notification.outbox.relay-interval-ms:200}")
+    public void relay() {
+        try {
+            Integer relayed;
+            do {
+                relayed = transactionTemplate.execute(status -> relayBatch());
+            } while (relayed != null && relayed == batchSize);
+        } catch (Exception e) {
+            // The batch stays in the outbox and is retried on the next run
+            log.warn("⚠️ Failed to relay outbox events: {}", e.getMessage());
+        }
+    }
+
+    private int relayBatch() {
+        // SKIP LOCKED lets several instances relay concurrently without publishing the same rows
+        List<OutboxEvent> batch = outboxEventRepository.lockOldest(batchSize);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<Object>> eventsByStream = new LinkedHashMap<>();
+        List<UUID> ids = new ArrayList<>(batch.size());
+        for (OutboxEvent outboxEvent : batch) {
+            ids.add(outboxEvent.getId());
+            Object event = deserialize(outboxEvent);
+            if (event != null) {
+                eventsByStream.computeIfAbsent(outboxEvent.getStream(), k -> new ArrayList<>()).add(event);
+            }
+        }
+
+        // A failed publish throws and rolls back, leaving the rows for the next run
+        eventsByStream.forEach(redisStreamService::publishAll);
+        outboxEventRepository.deleteByIds(ids);
+
+        log.debug("Relayed {} outbox events to {} streams", batch.size(), eventsByStream.size());
+        return batch.size();
+    }
+
+    private OutboxEvent toOutboxEvent(String stream, Object event) {
+        try {
+            return OutboxEvent.builder()
+                    .stream(stream)
+                    .eventType(event.getClass().getName())
+                    .payload(objectMapper.writeValueAsString(event))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize outbox event " + event.getClass().getSimpleName(), e);
+        }
+    }
+
+    private Object deserialize(OutboxEvent outboxEvent) {
+        try {
+            return objectMapper.readValue(outboxEvent.getPayload(), Class.forName(outboxEvent.getEventType()));
+        } catch (Exception e) {
+            // Unreadable rows would block the outbox forever; drop them with the rest of the batch
+            log.error("❌ Dropping unreadable outbox event {} of type {}: {}",
+                    outboxEvent.getId(), outboxEvent.getEventType(), e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.notificationservice.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JavaMailSender that keeps a bounded pool of connected, authenticated SMTP transports instead of
+ * connecting, doing STARTTLS/AUTH and disconnecting for every send. Each send borrows a transport
+ * and may push many messages through it. Transports idle for longer than {@code idleTimeoutMs} are
+ * closed, a transport is replaced after {@code maxMessagesPerConnection} messages, and one that
+ * fails with a connection-level error is discarded so the next send reconnects.
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl {
+
+    // A transport unused for longer than this is checked with a NOOP before it is reused
+    private static final long VALIDATE_AFTER_IDLE_MS = 1000;
+
+    // Waiters re-check for a free slot this often, since a discarded transport is never handed over
+    private static final long WAIT_SLICE_MS = 50;
+
+    private final long idleTimeoutMs;
+    private final int maxMessagesPerConnection;
+    private final long borrowTimeoutMs;
+
+    // Most recently used first, so a few connections stay hot and the rest can idle out
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final Semaphore connections;
+    private final AtomicLong openedConnections = new AtomicLong();
+
+    public PooledJavaMailSender(int maxConnections, long idleTimeoutMs, int maxMessagesPerConnection,
+            long borrowTimeoutMs) {
+        this.connections = new Semaphore(maxConnections);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport pooled = null;
+
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                Object original = originalMessages != null ? originalMessages[i] : mimeMessages[i];
+
+                if (pooled != null && pooled.sent >= maxMessagesPerConnection) {
+                    discard(pooled);
+                    pooled = null;
+                }
+                if (pooled == null) {
+                    try {
+                        pooled = borrow();
+                    } catch (MessagingException ex) {
+                        // No connection: this and every remaining message fail
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            failedMessages.put(originalMessages != null ? originalMessages[j] : mimeMessages[j], ex);
+                        }
+                        throw new MailSendException("Mail server connection failed", ex, failedMessages);
+                    }
+                }
+
+                try {
+                    send(pooled, mimeMessages[i]);
+                } catch (SendFailedException ex) {
+                    // Rejected recipients; the connection itself is fine
+                    failedMessages.put(original, ex);
+                } catch (Exception ex) {
+                    failedMessages.put(original, ex);
+                    discard(pooled);
+                    pooled = null;
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                release(pooled);
+            }
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    /**
+     * Close transports that have been idle for longer than the idle timeout
+     */
+    @Scheduled(fixedDelayString = "${app.notification.email.pool.evict-interval-ms:30000}")
+    public void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (PooledTransport pooled : idle) {
+            if (now - pooled.lastUsed >= idleTimeoutMs && idle.remove(pooled)) {
+                log.debug("Closing SMTP connection idle for {} ms", now - pooled.lastUsed);
+                discard(pooled);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Number of SMTP connections opened so far
+     */
+    public long getOpenedConnections() {
+        return openedConnections.get();
+    }
+
+    private void send(PooledTransport pooled, MimeMessage mimeMessage) throws MessagingException {
+        // Same preparation as JavaMailSenderImpl.doSend
+        if (mimeMessage.getSentDate() == null) {
+            mimeMessage.setSentDate(new Date());
+        }
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+        if (messageId != null) {
+            mimeMessage.setHeader("Message-ID", messageId);
+        }
+
+        Address[] addresses = mimeMessage.getAllRecipients();
+        pooled.transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+        pooled.sent++;
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        long deadline = System.currentTimeMillis() + borrowTimeoutMs;
+
+        while (true) {
+            PooledTransport pooled = idle.pollFirst();
+            if (pooled != null) {
+                if (isReusable(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+                continue;
+            }
+
+            if (connections.tryAcquire()) {
+                try {
+                    Transport transport = connectTransport();
+                    openedConnections.incrementAndGet();
+                    log.debug("Opened SMTP connection to {}:{}", getHost(), getPort());
+                    return new PooledTransport(transport);
+                } catch (MessagingException | RuntimeException ex) {
+                    connections.release();
+                    throw ex;
+                }
+            }
+
+            // Pool is at capacity: wait for a transport to be returned, or a slot to free up
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new MessagingException("No SMTP connection available within " + borrowTimeoutMs + " ms");
+            }
+            try {
+                pooled = idle.pollFirst(Math.min(remaining, WAIT_SLICE_MS), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+            }
+            if (pooled != null) {
+                if (isReusable(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+            }
+        }
+    }
+
+    private boolean isReusable(PooledTransport pooled) {
+        long idleFor = System.currentTimeMillis() - pooled.lastUsed;
+        if (idleFor >= idleTimeoutMs || pooled.sent >= maxMessagesPerConnection) {
+            return false;
+        }
+        // isConnected() sends a NOOP, so only pay for it when the server may have dropped us
+        return idleFor < VALIDATE_AFTER_IDLE_MS || pooled.transport.isConnected();
+    }
+
+    private void release(PooledTransport pooled) {
+        pooled.lastUsed = System.currentTimeMillis();
+        idle.offerFirst(pooled);
+    }
+
+    private void discard(PooledTransport pooled) {
+        try {
+            pooled.transport.close();
+        } catch (Exception e) {
+            log.debug("Failed to close SMTP connection: {}", e.getMessage());
+        } finally {
+            connections.release();
+        }
+    }
+
+    private static class PooledTransport {
+        private final Transport transport;
+        private int sent;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
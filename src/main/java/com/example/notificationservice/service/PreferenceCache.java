@@ -0,0 +1,200 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.entity.NotificationPreference;
+import com.example.notificationservice.repository.NotificationPreferenceRepository;
+import com.example.notificationservice.util.TransactionHooks;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Near-cache of user preferences used on the delivery path.
+ * Holds immutable snapshots, and an empty entry for users without a preference row so the default
+ * case does not hit the database either. Bounded by weight and expired after a while as a safety
+ * net; PreferenceService invalidates entries on change, on every node through Redis pub/sub.
+ * Bulk lookups stream the missing users in chunks of one {@code user_id = ANY(?)} query each.
+ * Hit/miss statistics are exported as {@code cache.*} metrics with {@code cache=preferences}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PreferenceCache {
+
+    private final NotificationPreferenceRepository preferenceRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${app.notification.preferences.cache.max-weight:200000}")
+    private long maxWeight;
+
+    @Value("${app.notification.preferences.cache.expire-after-write-ms:600000}")
+    private long expireAfterWriteMs;
+
+    @Value("${app.notification.preferences.resolve-chunk-size:1000}")
+    private int resolveChunkSize;
+
+    @Value("${app.redis.channels.preference-invalidation:notification:preference-invalidation}")
+    private String invalidationChannel;
+
+    private Cache<Integer, Optional<PreferenceSnapshot>> cache;
+    private TransactionTemplate readOnlyTransaction;
+
+    // Bulk loads reading from the database right now; an invalidation is noted in each, so a load
+    // does not keep a snapshot read before it
+    private final Set<BulkLoad> bulkLoads = ConcurrentHashMap.newKeySet();
+
+    private static final class BulkLoad {
+        private final Set<Integer> invalidated = ConcurrentHashMap.newKeySet();
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Integer userId, Optional<PreferenceSnapshot> snapshot) ->
+                        snapshot.map(PreferenceSnapshot::weight).orElse(1))
+                .expireAfterWrite(Duration.ofMillis(expireAfterWriteMs))
+                .recordStats()
+                .build();
+
+        // A transaction of its own: joining the caller's would ignore read-only and fill the
+        // caller's persistence context. Not NOT_SUPPORTED, as the rows are only streamed with a
+        // fetch size inside a transaction.
+        readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        readOnlyTransaction.setReadOnly(true);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "preferences");
+
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+            log.debug("Received preference invalidation for user: {}", userId);
+            invalidateLocally(Integer.valueOf(userId));
+        }, new ChannelTopic(invalidationChannel));
+    }
+
+    /**
+     * Preferences of a user; empty when the user has none and defaults apply
+     */
+    public Optional<PreferenceSnapshot> get(Integer userId) {
+        return cache.get(userId, id -> preferenceRepository.findByUserId(id).map(PreferenceSnapshot::of));
+    }
+
+    /**
+     * Preferences of many users. Cached users are served from memory; the rest are streamed from
+     * the database in chunks and put into the cache as they arrive, unless invalidated meanwhile.
+     *
+     * @return array aligned with {@code userIds}; null where a user has no preferences
+     */
+    public PreferenceSnapshot[] getAll(List<Integer> userIds) {
+        PreferenceSnapshot[] result = new PreferenceSnapshot[userIds.size()];
+        Map<Integer, List<Integer>> missing = new LinkedHashMap<>();
+
+        for (int i = 0; i < userIds.size(); i++) {
+            Optional<PreferenceSnapshot> cached = cache.getIfPresent(userIds.get(i));
+            if (cached != null) {
+                result[i] = cached.orElse(null);
+            } else {
+                missing.computeIfAbsent(userIds.get(i), k -> new ArrayList<>(1)).add(i);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<Integer> missingIds = new ArrayList<>(missing.keySet());
+        BulkLoad load = new BulkLoad();
+        bulkLoads.add(load);
+        try {
+            for (int from = 0; from < missingIds.size(); from += resolveChunkSize) {
+                List<Integer> chunk = missingIds.subList(from, Math.min(from + resolveChunkSize, missingIds.size()));
+                Set<Integer> found = new HashSet<>();
+
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<NotificationPreference> rows =
+                            preferenceRepository.streamByUserIds(chunk.toArray(new Integer[0]))) {
+                        rows.forEach(preference -> {
+                            PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference);
+                            // The snapshot is all we keep; don't let the persistence context grow
+                            entityManager.detach(preference);
+
+                            cacheLoaded(load, snapshot.userId(), Optional.of(snapshot));
+                            found.add(snapshot.userId());
+                            for (int index : missing.get(snapshot.userId())) {
+                                result[index] = snapshot;
+                            }
+                        });
+                    }
+                });
+
+                // Remember users without a row as well
+                for (Integer userId : chunk) {
+                    if (!found.contains(userId)) {
+                        cacheLoaded(load, userId, Optional.empty());
+                    }
+                }
+            }
+        } finally {
+            bulkLoads.remove(load);
+        }
+
+        log.debug("Resolved preferences of {} users, {} loaded from the database", userIds.size(), missing.size());
+        return result;
+    }
+
+    /**
+     * Put what a bulk load read; put first and checked after, as an invalidation notes the load
+     * before dropping the entry, so one of the two drops it
+     */
+    private void cacheLoaded(BulkLoad load, Integer userId, Optional<PreferenceSnapshot> snapshot) {
+        cache.put(userId, snapshot);
+        if (load.invalidated.contains(userId)) {
+            cache.invalidate(userId);
+        }
+    }
+
+    private void invalidateLocally(Integer userId) {
+        for (BulkLoad load : bulkLoads) {
+            load.invalidated.add(userId);
+        }
+        cache.invalidate(userId);
+    }
+
+    /**
+     * Drop a user's entry on this node and on every other node once the current transaction commits
+     */
+    public void invalidate(Integer userId) {
+        Runnable action = () -> {
+            invalidateLocally(userId);
+            try {
+                stringRedisTemplate.convertAndSend(invalidationChannel, userId.toString());
+            } catch (Exception e) {
+                log.error("Failed to publish preference invalidation for user {}: {}", userId, e.getMessage(), e);
+            }
+        };
+
+        TransactionHooks.afterCommit(action);
+    }
+}
@@ -16,6 +16,7 @@ import java.util.Optional;
 public class PreferenceService {
 
     private final NotificationPreferenceRepository preferenceRepository;
+    private final PreferenceCache preferenceCache;
 
     public Optional<PreferenceDto> getUserPreferences(Integer userId) {
         return preferenceRepository.findByUserId(userId).map(this::mapToDto);
@@ -36,6 +37,7 @@ public class PreferenceService {
                 .build();
 
         NotificationPreference saved = preferenceRepository.save(preference);
+        preferenceCache.invalidate(saved.getUserId());
         return mapToDto(saved);
     }
 
@@ -52,6 +54,7 @@ public class PreferenceService {
         preference.setCategories(dto.getNotificationTypes());
 
         NotificationPreference saved = preferenceRepository.save(preference);
+        preferenceCache.invalidate(saved.getUserId());
         return mapToDto(saved);
     }
 
@@ -60,6 +63,7 @@ public class PreferenceService {
         return preferenceRepository.findByUserId(userId)
                 .map(preference -> {
                     preferenceRepository.delete(preference);
+                    preferenceCache.invalidate(userId);
                     log.info("Deleted preferences for user: {}", userId);
                     return true;
                 })
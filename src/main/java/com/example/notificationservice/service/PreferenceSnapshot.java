@@ -0,0 +1,172 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.entity.NotificationPreference;
+import com.example.notificationservice.enums.NotificationChannel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A user's notification preferences compiled into a compact, immutable decision structure.
+ * Global switches are one bitmask; per-event-type channel settings are a byte per known event
+ * type, with a "set" and an "enabled" bit per channel. Settings of event types the platform does
+ * not publish (yet) are kept in a small map and looked up by name. Deciding whether to send is a
+ * couple of array lookups and does not allocate.
+ */
+public final class PreferenceSnapshot {
+
+    private static final int NOTIFICATIONS_ENABLED = 1;
+
+    // Event types the platform publishes, each with a slot in the per-type table
+    static final List<String> KNOWN_EVENT_TYPES = List.of(
+            "user.registered",
+            "session.completed",
+            "proctoring.violation",
+            "assessment.published",
+            "assessment.reminder",
+            "grade.available",
+            "comment.feedback",
+            "system.update",
+            "invite.student");
+
+    private static final Map<String, Integer> EVENT_TYPE_INDEX = indexOf(KNOWN_EVENT_TYPES);
+
+    private static final int UNKNOWN = -1;
+
+    private final Integer userId;
+    private final int flags;
+    private final byte[] eventTypeSettings;
+    private final Map<String, Byte> otherEventTypeSettings;
+
+    private PreferenceSnapshot(Integer userId, int flags, byte[] eventTypeSettings,
+            Map<String, Byte> otherEventTypeSettings) {
+        this.userId = userId;
+        this.flags = flags;
+        this.eventTypeSettings = eventTypeSettings;
+        this.otherEventTypeSettings = otherEventTypeSettings;
+    }
+
+    /**
+     * An event type resolved against the per-type table; resolve once per event, not per recipient
+     */
+    public record EventType(String name, int index) {
+    }
+
+    public static EventType eventType(String name) {
+        return new EventType(name, EVENT_TYPE_INDEX.getOrDefault(name, UNKNOWN));
+    }
+
+    public static PreferenceSnapshot of(NotificationPreference preference) {
+        // Only an explicit "false" turns notifications off; channels need an explicit "true"
+        int flags = Boolean.FALSE.equals(preference.getNotificationsEnabled()) ? 0 : NOTIFICATIONS_ENABLED;
+        if (Boolean.TRUE.equals(preference.getEmailEnabled())) {
+            flags |= channelBit(NotificationChannel.EMAIL);
+        }
+        if (Boolean.TRUE.equals(preference.getPushEnabled())) {
+            flags |= channelBit(NotificationChannel.PUSH);
+        }
+
+        byte[] eventTypeSettings = new byte[0];
+        Map<String, Byte> otherEventTypeSettings = null;
+        if (preference.getCategories() != null) {
+            for (Map.Entry<String, Map<String, Boolean>> category : preference.getCategories().entrySet()) {
+                Map<String, Boolean> settings = category.getValue();
+                if (settings == null) {
+                    continue;
+                }
+
+                byte bits = 0;
+                for (NotificationChannel channel : NotificationChannel.values()) {
+                    Boolean enabled = settings.get(settingKey(channel));
+                    if (enabled != null) {
+                        bits |= setBit(channel);
+                        if (enabled) {
+                            bits |= enabledBit(channel);
+                        }
+                    }
+                }
+
+                int index = EVENT_TYPE_INDEX.getOrDefault(category.getKey(), UNKNOWN);
+                if (index == UNKNOWN) {
+                    if (otherEventTypeSettings == null) {
+                        otherEventTypeSettings = new HashMap<>();
+                    }
+                    otherEventTypeSettings.put(category.getKey(), bits);
+                    continue;
+                }
+                if (index >= eventTypeSettings.length) {
+                    eventTypeSettings = Arrays.copyOf(eventTypeSettings, index + 1);
+                }
+                eventTypeSettings[index] = bits;
+            }
+        }
+
+        return new PreferenceSnapshot(preference.getUserId(), flags, eventTypeSettings,
+                otherEventTypeSettings == null ? Map.of() : Map.copyOf(otherEventTypeSettings));
+    }
+
+    /**
+     * Whether a notification of the given event type may be sent on a channel.
+     * The global switch wins, then a per-type channel setting, then the global channel setting.
+     */
+    public boolean allows(EventType eventType, NotificationChannel channel) {
+        if ((flags & NOTIFICATIONS_ENABLED) == 0) {
+            return false;
+        }
+
+        byte bits = 0;
+        if (eventType.index() == UNKNOWN) {
+            Byte other = otherEventTypeSettings.get(eventType.name());
+            if (other != null) {
+                bits = other;
+            }
+        } else if (eventType.index() < eventTypeSettings.length) {
+            bits = eventTypeSettings[eventType.index()];
+        }
+        if ((bits & setBit(channel)) != 0) {
+            return (bits & enabledBit(channel)) != 0;
+        }
+
+        return (flags & channelBit(channel)) != 0;
+    }
+
+    public Integer userId() {
+        return userId;
+    }
+
+    /**
+     * Rough size used to bound the cache by weight: one unit plus one per event type slot
+     */
+    public int weight() {
+        return 1 + eventTypeSettings.length + otherEventTypeSettings.size();
+    }
+
+    private static Map<String, Integer> indexOf(List<String> eventTypes) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < eventTypes.size(); i++) {
+            index.put(eventTypes.get(i), i);
+        }
+        return Map.copyOf(index);
+    }
+
+    private static int channelBit(NotificationChannel channel) {
+        return 1 << (channel.ordinal() + 1);
+    }
+
+    private static int setBit(NotificationChannel channel) {
+        return 1 << (channel.ordinal() * 2);
+    }
+
+    private static int enabledBit(NotificationChannel channel) {
+        return 1 << (channel.ordinal() * 2 + 1);
+    }
+
+    private static String settingKey(NotificationChannel channel) {
+        return switch (channel) {
+            case EMAIL -> "emailEnabled";
+            case PUSH -> "pushEnabled";
+        };
+    }
+}
@@ -1,15 +1,27 @@
 package com.example.notificationservice.service;
 
+import com.example.notificationservice.config.RedisStreamTrimmingProperties;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
 import org.springframework.data.redis.connection.stream.ObjectRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
 import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
- * Service for publishing events to Redis Streams
+ * Service for publishing events to Redis Streams.
+ * Batches are sent as one pipeline instead of one round trip per event. Streams are only trimmed
+ * (MAXLEN ~) when a cap is configured for them in {@link RedisStreamTrimmingProperties}.
  */
 @Service
 @RequiredArgsConstructor
@@ -18,6 +30,10 @@ public class RedisStreamService {
 
     private final RedisTemplate<String, Object> redisTemplate;
     private final ObjectMapper objectMapper;
+    private final RedisStreamTrimmingProperties trimmingProperties;
+
+    @Value("${app.redis.streams.shard-count:1}")
+    private int shardCount;
 
     /**
      * Publish an event to a Redis Stream
@@ -32,7 +48,7 @@ public class RedisStreamService {
                     .ofObject(event)
                     .withStreamKey(streamName);
 
-            var recordId = redisTemplate.opsForStream().add(record);
+            var recordId = redisTemplate.opsForStream().add(record, addOptions(streamName));
 
             log.debug("Published event to stream {}: {} (ID: {})",
                     streamName, event.getClass().getSimpleName(), recordId);
@@ -44,6 +60,57 @@ public class RedisStreamService {
         }
     }
 
+    /**
+     * Publish several events to a Redis Stream in one pipelined round trip
+     *
+     * @param streamName The name of the stream
+     * @param events The event objects to publish, in order
+     * @return The message IDs assigned by Redis, in the same order
+     */
+    public List<String> publishAll(String streamName, List<?> events) {
+        if (events.isEmpty()) {
+            return List.of();
+        }
+
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    XAddOptions options = addOptions(streamName);
+                    for (Object event : events) {
+                        ops.opsForStream().add(StreamRecords.newRecord()
+                                .ofObject(event)
+                                .withStreamKey(streamName), options);
+                    }
+                    return null;
+                }
+            });
+
+            log.debug("Published {} events to stream {} in one pipeline", events.size(), streamName);
+
+            return results.stream()
+                    .map(result -> result instanceof RecordId id ? id.getValue() : String.valueOf(result))
+                    .toList();
+        } catch (Exception e) {
+            log.error("Failed to publish {} events to stream {}: {}", events.size(), streamName, e.getMessage(), e);
+            throw new RuntimeException("Failed to publish events to Redis Stream", e);
+        }
+    }
+
+    /**
+     * Publish several events in one pipeline without blocking the caller
+     *
+     * @param streamName The name of the stream
+     * @param events The event objects to publish, in order
+     * @return Future of the message IDs assigned by Redis
+     */
+    @Async("notificationExecutor")
+    public CompletableFuture<List<String>> publishAsync(String streamName, List<?> events) {
+        return CompletableFuture.completedFuture(publishAll(streamName, events));
+    }
+
     /**
      * Publish an event to a Redis Stream with a specific key
      *
@@ -53,15 +120,16 @@ public class RedisStreamService {
      * @return The message ID assigned by Redis
      */
     public String publishWithKey(String streamName, String key, Object event) {
+        String shardKey = shardKey(streamName, key);
         try {
             ObjectRecord<String, Object> record = StreamRecords.newRecord()
                     .ofObject(event)
-                    .withStreamKey(streamName);
+                    .withStreamKey(shardKey);
 
-            var recordId = redisTemplate.opsForStream().add(record);
+            var recordId = redisTemplate.opsForStream().add(record, addOptions(streamName));
 
             log.debug("Published event to stream {} with key {}: {} (ID: {})",
-                    streamName, key, event.getClass().getSimpleName(), recordId);
+                    shardKey, key, event.getClass().getSimpleName(), recordId);
 
             return recordId.getValue();
         } catch (Exception e) {
@@ -70,4 +138,22 @@ public class RedisStreamService {
             throw new RuntimeException("Failed to publish event to Redis Stream", e);
         }
     }
+
+    /**
+     * Stream key a partition key is routed to: {@code <stream>:<shard>}, or the stream itself
+     * when sharding is disabled. Events with the same key always land on the same shard.
+     */
+    public String shardKey(String streamName, String key) {
+        if (shardCount <= 1 || key == null) {
+            return streamName;
+        }
+        return streamName + ":" + Math.floorMod(key.hashCode(), shardCount);
+    }
+
+    private XAddOptions addOptions(String streamName) {
+        long maxLength = trimmingProperties.maxLengthOf(streamName);
+        return maxLength > 0
+                ? XAddOptions.maxlen(maxLength).approximateTrimming(true)
+                : XAddOptions.none();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,276 @@
+package com.example.notificationservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * One SSE connection with a bounded outbound queue. Callers only queue events; a writer on a
+ * virtual thread, started when the queue goes from empty to non-empty, does the blocking
+ * {@link SseEmitter#send}, so a client with a full TCP window only holds up its own queue. A full
+ * queue either drops the oldest event or disconnects the client, which then reconnects and
+ * catches up from the replay buffer. Heartbeats are coalesced: at most one is queued. Events are
+ * queued already built, so a broadcast {@link SseFrame} is queued on every connection as the same
+ * payload. {@link #disconnect()} ends the connection gracefully, after what is queued is written.
+ */
+@Slf4j
+public final class SseConnection {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    /**
+     * Meters shared by all connections; per-connection tags would be unbounded
+     */
+    public record Metrics(Timer lag, Counter dropped, Counter coalesced, Counter disconnected) {
+    }
+
+    private record Outbound(Set<ResponseBodyEmitter.DataWithMediaType> payload, long queuedAt, boolean heartbeat) {
+    }
+
+    private final SseEmitter emitter;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Executor writerExecutor;
+    private final Metrics metrics;
+    private final Consumer<SseConnection> onClose;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Outbound> queue = new ArrayDeque<>();
+    private boolean writing;
+    private boolean heartbeatQueued;
+    private boolean closed;
+    private boolean completeWhenDrained;
+
+    // Highest id replayed on this connection; a live push up to it is a duplicate. Guarded by the
+    // sequence lock of the user's connections
+    long replayedThrough;
+
+    public SseConnection(SseEmitter emitter, int capacity, OverflowPolicy overflowPolicy,
+            Executor writerExecutor, Metrics metrics, Consumer<SseConnection> onClose) {
+        this.emitter = emitter;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.writerExecutor = writerExecutor;
+        this.metrics = metrics;
+        this.onClose = onClose;
+    }
+
+    public SseEmitter emitter() {
+        return emitter;
+    }
+
+    /**
+     * Queue an event for the writer
+     *
+     * @return false when the connection is closed, or was closed because its queue overflowed
+     */
+    public boolean offer(SseEmitter.SseEventBuilder event) {
+        return enqueue(new Outbound(event.build(), System.nanoTime(), false));
+    }
+
+    /**
+     * Queue a pre-encoded event
+     *
+     * @return false when the connection is closed, or was closed because its queue overflowed
+     */
+    public boolean offer(SseFrame frame) {
+        return enqueue(new Outbound(frame.payload(), System.nanoTime(), false));
+    }
+
+    /**
+     * Queue a keep-alive unless one is already waiting
+     */
+    public boolean offerHeartbeat(SseEmitter.SseEventBuilder event) {
+        lock.lock();
+        try {
+            if (heartbeatQueued) {
+                metrics.coalesced().increment();
+                return !closed;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return enqueue(new Outbound(event.build(), System.nanoTime(), true));
+    }
+
+    /**
+     * Events waiting to be written
+     */
+    public int queued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * How long the oldest queued event has been waiting, in milliseconds; 0 when nothing is queued
+     */
+    public long lagMs() {
+        lock.lock();
+        try {
+            Outbound oldest = queue.peekFirst();
+            return oldest != null ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.queuedAt()) : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop writing and drop whatever is queued; the emitter itself is left to the caller
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            completeWhenDrained = false;
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accept nothing more, write what is already queued and then complete the emitter
+     */
+    public void disconnect() {
+        boolean startWriter = false;
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            completeWhenDrained = true;
+            if (!writing) {
+                writing = true;
+                startWriter = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (startWriter) {
+            writerExecutor.execute(this::drain);
+        }
+    }
+
+    private boolean enqueue(Outbound outbound) {
+        boolean startWriter = false;
+        boolean overflowed = false;
+
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (queue.size() >= capacity) {
+                if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+                    closed = true;
+                    queue.clear();
+                    overflowed = true;
+                } else {
+                    Outbound dropped = queue.pollFirst();
+                    if (dropped != null && dropped.heartbeat()) {
+                        heartbeatQueued = false;
+                    }
+                    metrics.dropped().increment();
+                }
+            }
+            if (!overflowed) {
+                queue.addLast(outbound);
+                heartbeatQueued |= outbound.heartbeat();
+                if (!writing) {
+                    writing = true;
+                    startWriter = true;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (overflowed) {
+            // The client reconnects with Last-Event-ID and gets the rest from the replay buffer
+            log.warn("⚠️ SSE client too slow, {} events queued; disconnecting", capacity);
+            metrics.disconnected().increment();
+            onClose.accept(this);
+            // Completing waits for a write in progress, so leave that to a writer thread
+            writerExecutor.execute(() -> complete(null));
+            return false;
+        }
+        if (startWriter) {
+            writerExecutor.execute(this::drain);
+        }
+        return true;
+    }
+
+    private void drain() {
+        while (true) {
+            Outbound next;
+            boolean completing;
+            lock.lock();
+            try {
+                completing = completeWhenDrained;
+                next = closed && !completing ? null : queue.pollFirst();
+                if (next == null) {
+                    writing = false;
+                    completeWhenDrained = false;
+                } else if (next.heartbeat()) {
+                    heartbeatQueued = false;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (next == null) {
+                if (completing) {
+                    complete(null);
+                }
+                return;
+            }
+
+            metrics.lag().record(System.nanoTime() - next.queuedAt(), TimeUnit.NANOSECONDS);
+            try {
+                emitter.send(next.payload());
+            } catch (Exception e) {
+                log.debug("SSE write failed, closing connection: {}", e.getMessage());
+                lock.lock();
+                try {
+                    closed = true;
+                    completeWhenDrained = false;
+                    writing = false;
+                    queue.clear();
+                } finally {
+                    lock.unlock();
+                }
+                onClose.accept(this);
+                complete(e);
+                return;
+            }
+        }
+    }
+
+    private void complete(Exception cause) {
+        try {
+            if (cause != null) {
+                emitter.completeWithError(cause);
+            } else {
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            log.debug("Failed to complete SSE emitter: {}", e.getMessage());
+        }
+    }
+}
@@ -1,149 +1,483 @@
 package com.example.notificationservice.service;
 
+import com.example.notificationservice.service.SseReplayBuffer.BufferedEvent;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
 import java.time.Instant;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * SSE connections of this node. Which nodes hold connections of a user is kept in the
+ * {@link SsePresenceRegistry}; a push is delivered to the user's connections on this node and
+ * published once on the channel of every other node holding some, and delivered there. A push to a
+ * user gets its per-user id from the {@link SseReplayBuffer}: once, where it is raised, when the
+ * buffer is shared through Redis, otherwise on each node delivering it. A client reconnecting with
+ * {@code Last-Event-ID} is sent what it missed before any live event. A user may hold up to {@code connection-limit-per-user}
+ * connections (tabs, devices), each sent every push; connecting past the limit ends the user's oldest
+ * connection. Nothing here writes to a socket: events are queued on the {@link SseConnection} and
+ * written by its own writer thread.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SseEmitterService {
 
-    private final Map<String, SseEmitter> userEmitters = new ConcurrentHashMap<>();
-    private final Map<String, List<SseEmitter>> topicEmitters = new ConcurrentHashMap<>();
+    private final Map<Integer, UserConnections> userEmitters = new ConcurrentHashMap<>();
+    private final Map<String, List<SseConnection>> topicEmitters = new ConcurrentHashMap<>();
     private final ObjectMapper objectMapper;
+    private final SsePresenceRegistry presenceRegistry;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final MeterRegistry meterRegistry;
+    private final SseReplayBuffer replayBuffer;
 
     private static final Long DEFAULT_TIMEOUT = 24 * 60 * 60 * 1000L; // 24 hours
 
+    @Value("${app.notification.sse.connection-limit-per-user:5}")
+    private int connectionLimitPerUser;
+
+    @Value("${app.notification.sse.outbound.queue-capacity:100}")
+    private int outboundQueueCapacity;
+
+    @Value("${app.notification.sse.outbound.overflow-policy:DISCONNECT}")
+    private SseConnection.OverflowPolicy overflowPolicy;
+
+    // Writers block on slow clients, so each gets a virtual thread of its own
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+    private SseConnection.Metrics outboundMetrics;
+
+    private Counter localPushes;
+    private Counter routedPushes;
+    private Counter offlinePushes;
+    private Counter connectionsEvicted;
+
+    /**
+     * Push addressed to a user connected to another node; {@code eventId} is null when the replay
+     * buffer is per node, or when the push could not be buffered
+     */
+    private record RoutedPush(Integer userId, Long eventId, String eventName, Object data) {
+    }
+
+    /**
+     * Connections of one user on this node, oldest first. The array is replaced, never changed, so
+     * a push iterates it without copying or locking.
+     */
+    private static final class UserConnections {
+        // Held while assigning event ids and queueing, so every connection gets events in id order
+        private final ReentrantLock sequenceLock = new ReentrantLock();
+        private volatile SseConnection[] connections = new SseConnection[0];
+        // Set once the last connection left; the entry is then on its way out of userEmitters
+        private boolean retired;
+
+        /**
+         * @return false when this entry is retired and a fresh one is needed
+         */
+        synchronized boolean add(SseConnection connection) {
+            if (retired) {
+                return false;
+            }
+            SseConnection[] current = connections;
+            SseConnection[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = connection;
+            connections = next;
+            return true;
+        }
+
+        /**
+         * @return true when this removed the last connection
+         */
+        synchronized boolean remove(SseConnection connection) {
+            SseConnection[] current = connections;
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == connection) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return false;
+            }
+            SseConnection[] next = new SseConnection[current.length - 1];
+            System.arraycopy(current, 0, next, 0, index);
+            System.arraycopy(current, index + 1, next, index, next.length - index);
+            connections = next;
+            retired = next.length == 0;
+            return retired;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        localPushes = pushCounter("local");
+        routedPushes = pushCounter("remote");
+        offlinePushes = pushCounter("offline");
+        connectionsEvicted = Counter.builder("notification.sse.connections.evicted")
+                .description("Oldest connections of a user closed to stay within connection-limit-per-user")
+                .register(meterRegistry);
+
+        outboundMetrics = new SseConnection.Metrics(
+                Timer.builder("notification.sse.outbound.lag")
+                        .description("Time an event waited in a connection's queue before it was written")
+                        .publishPercentiles(0.5, 0.99)
+                        .register(meterRegistry),
+                overflowCounter("dropped"),
+                overflowCounter("coalesced"),
+                overflowCounter("disconnected"));
+        Gauge.builder("notification.sse.outbound.queued", this, SseEmitterService::queuedEvents)
+                .description("Events waiting in connection queues")
+                .register(meterRegistry);
+
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                RoutedPush push = objectMapper.readValue(message.getBody(), RoutedPush.class);
+                if (!sendToLocalUser(push.userId(), push.eventId(), push.eventName(), push.data())) {
+                    // With a shared buffer it is already kept for replay where it was raised
+                    log.debug("Routed push for user {} arrived after the user left this node", push.userId());
+                }
+            } catch (Exception e) {
+                log.error("Failed to handle routed SSE push: {}", e.getMessage(), e);
+            }
+        }, new ChannelTopic(presenceRegistry.nodeChannel()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    private Counter overflowCounter(String action) {
+        return Counter.builder("notification.sse.outbound.overflow")
+                .description("Events dropped or coalesced, and clients disconnected, because a queue was full")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+
+    private double queuedEvents() {
+        long queued = 0;
+        for (UserConnections user : userEmitters.values()) {
+            for (SseConnection connection : user.connections) {
+                queued += connection.queued();
+            }
+        }
+        for (List<SseConnection> connections : topicEmitters.values()) {
+            for (SseConnection connection : connections) {
+                queued += connection.queued();
+            }
+        }
+        return queued;
+    }
+
+    private SseConnection newConnection(SseEmitter emitter, Consumer<SseConnection> onClose) {
+        return new SseConnection(emitter, outboundQueueCapacity, overflowPolicy, writers, outboundMetrics, onClose);
+    }
+
+    private Counter pushCounter(String route) {
+        return Counter.builder("notification.sse.push")
+                .description("Pushes to a user, by where the user's connection was")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
     /**
      * Create SSE connection for a specific user
      */
     public SseEmitter createEmitterForUser(Integer userId) {
-        String key = getUserKey(userId);
-
-        // Remove existing emitter if present
-        removeUserEmitter(key);
+        return createEmitterForUser(userId, null);
+    }
 
+    /**
+     * Create SSE connection for a user resuming after {@code lastEventId}; buffered events after
+     * it are sent before live ones
+     */
+    public SseEmitter createEmitterForUser(Integer userId, Long lastEventId) {
         SseEmitter emitter = new SseEmitter(DEFAULT_TIMEOUT);
+        SseConnection connection = newConnection(emitter, closed -> removeUserEmitter(userId, closed));
 
-        // Set up callbacks
+        // Set up callbacks; they only remove this connection, not the user's others
         emitter.onCompletion(() -> {
             log.debug("SSE connection completed for user: {}", userId);
-            removeUserEmitter(key);
+            removeUserEmitter(userId, connection);
         });
 
         emitter.onTimeout(() -> {
             log.debug("SSE connection timed out for user: {}", userId);
-            removeUserEmitter(key);
+            removeUserEmitter(userId, connection);
         });
 
         emitter.onError((ex) -> {
             log.error("SSE connection error for user {}: {}", userId, ex.getMessage());
-            removeUserEmitter(key);
+            removeUserEmitter(userId, connection);
         });
 
-        // Store emitter
-        userEmitters.put(key, emitter);
-
-        // Send initial connection event
+        // Store connection with the user's others and claim the user for this node; live pushes
+        // wait on the sequence lock until the missed events are queued
+        UserConnections user = lockAndAdd(userId, connection);
         try {
-            SseEmitter.SseEventBuilder event = SseEmitter.event()
+            presenceRegistry.register(userId);
+
+            // Send initial connection event
+            connection.offer(SseEmitter.event()
                     .name("connect")
                     .data(Map.of(
                             "message", "Connected to notification service",
                             "userId", userId,
                             "timestamp", Instant.now()
-                    ));
-            emitter.send(event);
-            log.info("SSE connection established for user: {}", userId);
-        } catch (IOException e) {
-            log.error("Failed to send initial SSE event to user {}: {}", userId, e.getMessage());
+                    )));
+            log.info("SSE connection established for user: {} ({} open)", userId, user.connections.length);
+
+            if (lastEventId != null) {
+                List<BufferedEvent> missed = replayBuffer.since(userId, lastEventId);
+                for (BufferedEvent event : missed) {
+                    if (!send(userId, connection, event.id(), encode(String.valueOf(event.id()), event.name(), event.data()))) {
+                        break;
+                    }
+                    connection.replayedThrough = event.id();
+                }
+                log.info("Replayed {} SSE events to user {} after event {}", missed.size(), userId, lastEventId);
+            }
+        } finally {
+            user.sequenceLock.unlock();
         }
 
+        evictOverLimit(userId, user);
         return emitter;
     }
 
+    /**
+     * Add a connection to the user's entry, creating it if needed, and return the entry with its
+     * sequence lock held
+     */
+    private UserConnections lockAndAdd(Integer userId, SseConnection connection) {
+        while (true) {
+            UserConnections user = userEmitters.computeIfAbsent(userId, id -> new UserConnections());
+            user.sequenceLock.lock();
+            if (user.add(connection)) {
+                return user;
+            }
+            // Its last connection just left; wait for it to be removed and start a new entry
+            user.sequenceLock.unlock();
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * End the user's oldest connections until the user is within the limit. The client is told why,
+     * so it does not reconnect and push out the connection that replaced it.
+     */
+    private void evictOverLimit(Integer userId, UserConnections user) {
+        int limit = Math.max(1, connectionLimitPerUser);
+        while (true) {
+            SseConnection[] current = user.connections;
+            if (current.length <= limit) {
+                return;
+            }
+            SseConnection oldest = current[0];
+            oldest.offer(SseEmitter.event()
+                    .name("disconnected")
+                    .data(Map.of(
+                            "reason", "connection-limit",
+                            "message", "Disconnected: more than " + limit + " connections open for this user",
+                            "timestamp", Instant.now()
+                    )));
+            detachUserEmitter(userId, oldest);
+            oldest.disconnect();
+            connectionsEvicted.increment();
+            log.info("Closed oldest SSE connection of user {}: over the limit of {}", userId, limit);
+        }
+    }
+
     /**
      * Subscribe to a topic for broadcast messages
      */
     public SseEmitter subscribeToTopic(String topic, Integer userId) {
         SseEmitter emitter = new SseEmitter(DEFAULT_TIMEOUT);
+        SseConnection connection = newConnection(emitter, closed -> removeTopicEmitter(topic, closed));
 
         emitter.onCompletion(() -> {
             log.debug("SSE topic subscription completed for topic: {}, user: {}", topic, userId);
-            removeTopicEmitter(topic, emitter);
+            removeTopicEmitter(topic, connection);
         });
 
         emitter.onTimeout(() -> {
             log.debug("SSE topic subscription timed out for topic: {}, user: {}", topic, userId);
-            removeTopicEmitter(topic, emitter);
+            removeTopicEmitter(topic, connection);
         });
 
         emitter.onError((ex) -> {
             log.error("SSE topic subscription error for topic {}, user {}: {}", topic, userId, ex.getMessage());
-            removeTopicEmitter(topic, emitter);
+            removeTopicEmitter(topic, connection);
         });
 
         // Add to topic subscribers
-        topicEmitters.computeIfAbsent(topic, k -> new CopyOnWriteArrayList<>()).add(emitter);
+        topicEmitters.computeIfAbsent(topic, k -> new CopyOnWriteArrayList<>()).add(connection);
 
         // Send subscription confirmation
-        try {
-            SseEmitter.SseEventBuilder event = SseEmitter.event()
-                    .name("subscribed")
-                    .data(Map.of(
-                            "topic", topic,
-                            "message", "Subscribed to topic: " + topic,
-                            "timestamp", Instant.now()
-                    ));
-            emitter.send(event);
-            log.info("User {} subscribed to topic: {}", userId, topic);
-        } catch (IOException e) {
-            log.error("Failed to send subscription confirmation: {}", e.getMessage());
-        }
+        connection.offer(SseEmitter.event()
+                .name("subscribed")
+                .data(Map.of(
+                        "topic", topic,
+                        "message", "Subscribed to topic: " + topic,
+                        "timestamp", Instant.now()
+                )));
+        log.info("User {} subscribed to topic: {}", userId, topic);
 
         return emitter;
     }
 
     /**
-     * Send notification to a specific user
+     * Send notification to a specific user: to the user's connections on this node, and routed to
+     * every other node holding connections of the user
+     *
+     * @return false when the user is not connected anywhere
      */
     public boolean sendToUser(Integer userId, String eventName, Object data) {
-        String key = getUserKey(userId);
-        SseEmitter emitter = userEmitters.get(key);
-
-        if (emitter != null) {
+        // Presence is looked up in Redis only for users not connected here
+        UserConnections user = userEmitters.get(userId);
+        Set<String> remoteOwners = user != null ? presenceRegistry.remoteOwnersOf(userId) : remoteOwnersOf(userId);
+
+        // With a shared buffer the id is assigned here, once, and travels with the push; otherwise
+        // each node numbers the pushes to its own connections. The user's connections on this node
+        // are queued under the same lock, so they get ids in order.
+        boolean shared = replayBuffer.isShared();
+        BufferedEvent event = null;
+        boolean delivered = false;
+        if (user != null) {
+            localPushes.increment();
+            user.sequenceLock.lock();
             try {
-                SseEmitter.SseEventBuilder event = SseEmitter.event()
-                        .id(String.valueOf(System.currentTimeMillis()))
-                        .name(eventName)
-                        .data(data);
-
-                emitter.send(event);
-                log.debug("SSE notification sent to user {}: {}", userId, eventName);
-                return true;
-            } catch (IOException e) {
-                log.error("Failed to send SSE notification to user {}: {}", userId, e.getMessage());
-                removeUserEmitter(key);
-                return false;
+                event = replayBuffer.append(userId, eventName, data);
+                delivered = deliver(userId, user, idOf(event), eventName, data);
+            } finally {
+                user.sequenceLock.unlock();
             }
-        } else {
-            log.warn("No active SSE connection for user: {}", userId);
+        } else if (shared || remoteOwners.isEmpty()) {
+            // Kept for replay also when the user is offline, in case the user is just reconnecting
+            event = replayBuffer.append(userId, eventName, data);
+        }
+
+        Long routedId = shared ? idOf(event) : null;
+        boolean routed = false;
+        for (String owner : remoteOwners) {
+            routed |= route(userId, owner, routedId, eventName, data);
+        }
+        if (user != null || routed) {
+            return delivered || routed;
+        }
+
+        offlinePushes.increment();
+        log.debug("No active SSE connection for user: {}", userId);
+        return false;
+    }
+
+    private Set<String> remoteOwnersOf(Integer userId) {
+        try {
+            // This node may still hold an entry of a user who just disconnected
+            return presenceRegistry.ownersOf(userId).stream()
+                    .filter(owner -> !owner.equals(presenceRegistry.nodeId()))
+                    .collect(Collectors.toSet());
+        } catch (Exception e) {
+            log.error("Failed to look up SSE presence of user {}: {}", userId, e.getMessage());
+            return Set.of();
+        }
+    }
+
+    private static Long idOf(BufferedEvent event) {
+        return event != null ? event.id() : null;
+    }
+
+    private boolean route(Integer userId, String node, Long eventId, String eventName, Object data) {
+        try {
+            stringRedisTemplate.convertAndSend(presenceRegistry.channelFor(node),
+                    objectMapper.writeValueAsString(new RoutedPush(userId, eventId, eventName, data)));
+            routedPushes.increment();
+            log.debug("SSE notification for user {} routed to node {}", userId, node);
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to route SSE notification for user {} to node {}: {}", userId, node, e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Deliver a push routed here, with the id it was given where it was raised, or numbered here
+     * when the replay buffer is per node
+     */
+    private boolean sendToLocalUser(Integer userId, Long eventId, String eventName, Object data) {
+        UserConnections user = userEmitters.get(userId);
+        if (user == null) {
+            return false;
+        }
+
+        user.sequenceLock.lock();
+        try {
+            if (!replayBuffer.isShared()) {
+                eventId = idOf(replayBuffer.append(userId, eventName, data));
+            }
+            return deliver(userId, user, eventId, eventName, data);
+        } finally {
+            user.sequenceLock.unlock();
+        }
+    }
+
+    /**
+     * Queue an event on all of the user's connections; caller holds the user's sequence lock
+     */
+    private boolean deliver(Integer userId, UserConnections user, Long eventId, String eventName, Object data) {
+        // Encoded once for all of the user's connections
+        SseFrame frame = encode(eventId != null ? String.valueOf(eventId) : null, eventName, data);
+        boolean queued = false;
+        for (SseConnection connection : user.connections) {
+            queued |= send(userId, connection, eventId, frame);
+        }
+        return queued;
+    }
+
+    /**
+     * Queue an event unless the connection got it replayed; caller holds the user's sequence lock.
+     * Live pushes are not checked against each other: pushes raised on different nodes can arrive
+     * out of id order, and each must still be sent.
+     */
+    private boolean send(Integer userId, SseConnection connection, Long eventId, SseFrame frame) {
+        if (eventId != null && eventId <= connection.replayedThrough) {
+            return true;
+        }
+        if (frame == null) {
+            return false;
+        }
+        boolean queued = connection.offer(frame);
+        if (queued) {
+            log.debug("SSE notification {} queued for user {}", eventId, userId);
+        }
+        return queued;
+    }
+
     /**
      * Send notification to a specific user with structured data
      */
@@ -159,30 +493,18 @@ public class SseEmitterService {
     }
 
     /**
-     * Broadcast to all subscribers of a topic
+     * Broadcast to all subscribers of a topic; the event is encoded once for all of them
      */
     public void broadcastToTopic(String topic, String eventName, Object data) {
-        List<SseEmitter> emitters = topicEmitters.get(topic);
+        List<SseConnection> emitters = topicEmitters.get(topic);
 
         if (emitters != null && !emitters.isEmpty()) {
-            List<SseEmitter> deadEmitters = new ArrayList<>();
-
-            emitters.forEach(emitter -> {
-                try {
-                    SseEmitter.SseEventBuilder event = SseEmitter.event()
-                            .id(String.valueOf(System.currentTimeMillis()))
-                            .name(eventName)
-                            .data(data);
-
-                    emitter.send(event);
-                } catch (IOException e) {
-                    log.error("Failed to send broadcast to topic {}: {}", topic, e.getMessage());
-                    deadEmitters.add(emitter);
-                }
-            });
-
-            // Remove dead emitters
-            emitters.removeAll(deadEmitters);
+            SseFrame frame = encode(String.valueOf(System.currentTimeMillis()), eventName, data);
+            if (frame == null) {
+                return;
+            }
+            // Closed connections remove themselves
+            emitters.forEach(connection -> connection.offer(frame));
 
             log.debug("Broadcasted to {} subscribers on topic: {}", emitters.size(), topic);
         } else {
@@ -191,31 +513,35 @@ public class SseEmitterService {
     }
 
     /**
-     * Broadcast to all connected users
+     * Broadcast to all connected users; the event is encoded once for all of them
      */
     public void broadcastToAll(String eventName, Object data) {
-        List<String> deadConnections = new ArrayList<>();
-
-        userEmitters.forEach((key, emitter) -> {
-            try {
-                SseEmitter.SseEventBuilder event = SseEmitter.event()
-                        .id(String.valueOf(System.currentTimeMillis()))
-                        .name(eventName)
-                        .data(data);
-
-                emitter.send(event);
-            } catch (IOException e) {
-                log.error("Failed to broadcast to user {}: {}", key, e.getMessage());
-                deadConnections.add(key);
+        if (userEmitters.isEmpty()) {
+            return;
+        }
+        // No id: it would move the client's Last-Event-ID past events it has not seen
+        SseFrame frame = encode(null, eventName, data);
+        if (frame == null) {
+            return;
+        }
+        userEmitters.forEach((userId, user) -> {
+            for (SseConnection connection : user.connections) {
+                connection.offer(frame);
             }
         });
 
-        // Remove dead connections
-        deadConnections.forEach(this::removeUserEmitter);
-
         log.debug("Broadcasted to {} users", userEmitters.size());
     }
 
+    private SseFrame encode(String id, String eventName, Object data) {
+        try {
+            return SseFrame.encode(objectMapper, id, eventName, data);
+        } catch (Exception e) {
+            log.error("❌ Failed to encode SSE broadcast {}: {}", eventName, e.getMessage(), e);
+            return null;
+        }
+    }
+
     /**
      * Send heartbeat to keep connections alive
      */
@@ -226,41 +552,19 @@ public class SseEmitterService {
                 "type", "heartbeat"
         );
 
-        // Send heartbeat to all user connections
-        List<String> deadConnections = new ArrayList<>();
-
-        userEmitters.forEach((key, emitter) -> {
-            try {
-                SseEmitter.SseEventBuilder event = SseEmitter.event()
+        // Send heartbeat to all user connections; a failed write closes and removes the connection
+        userEmitters.forEach((userId, user) -> {
+            for (SseConnection connection : user.connections) {
+                connection.offerHeartbeat(SseEmitter.event()
                         .name("heartbeat")
                         .data(heartbeat)
-                        .comment("keep-alive");
-
-                emitter.send(event);
-            } catch (IOException e) {
-                log.debug("Heartbeat failed for {}, removing connection", key);
-                deadConnections.add(key);
+                        .comment("keep-alive"));
             }
         });
 
-        deadConnections.forEach(this::removeUserEmitter);
-
         // Send heartbeat to topic subscribers
-        topicEmitters.forEach((topic, emitters) -> {
-            List<SseEmitter> deadEmitters = new ArrayList<>();
-
-            emitters.forEach(emitter -> {
-                try {
-                    SseEmitter.SseEventBuilder event = SseEmitter.event()
-                            .comment("keep-alive");
-                    emitter.send(event);
-                } catch (IOException e) {
-                    deadEmitters.add(emitter);
-                }
-            });
-
-            emitters.removeAll(deadEmitters);
-        });
+        topicEmitters.forEach((topic, emitters) -> emitters.forEach(connection ->
+                connection.offerHeartbeat(SseEmitter.event().comment("keep-alive"))));
 
         if (!userEmitters.isEmpty() || !topicEmitters.isEmpty()) {
             log.trace("Heartbeat sent to {} user connections and {} topics",
@@ -269,57 +573,103 @@ public class SseEmitterService {
     }
 
     /**
-     * Get active connection count
+     * Get active connection count, all connections of all users
      */
     public int getActiveUserConnections() {
+        int connections = 0;
+        for (UserConnections user : userEmitters.values()) {
+            connections += user.connections.length;
+        }
+        return connections;
+    }
+
+    /**
+     * Users with at least one connection to this node
+     */
+    public int getConnectedUsers() {
         return userEmitters.size();
     }
 
+    /**
+     * User connections furthest behind, as userId, queued events and lag of the oldest one
+     */
+    public List<Map<String, Object>> getLaggingConnections(int limit) {
+        // Snapshot first; lag keeps moving while sorting
+        return userEmitters.entrySet().stream()
+                .flatMap(entry -> Arrays.stream(entry.getValue().connections)
+                        .map(connection -> Map.<String, Object>of(
+                                "userId", entry.getKey(),
+                                "queued", connection.queued(),
+                                "lagMs", connection.lagMs())))
+                .filter(stats -> (int) stats.get("queued") > 0)
+                .sorted(Comparator.comparingLong((Map<String, Object> stats) -> (long) stats.get("lagMs")).reversed())
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * Id of this node in the presence registry
+     */
+    public String getNodeId() {
+        return presenceRegistry.nodeId();
+    }
+
     /**
      * Get topic subscriber count
      */
     public int getTopicSubscriberCount(String topic) {
-        List<SseEmitter> emitters = topicEmitters.get(topic);
+        List<SseConnection> emitters = topicEmitters.get(topic);
         return emitters != null ? emitters.size() : 0;
     }
 
     /**
-     * Check if user is connected
+     * Check if user is connected, to this node or any other
      */
     public boolean isUserConnected(Integer userId) {
-        return userEmitters.containsKey(getUserKey(userId));
+        return userEmitters.containsKey(userId) || !remoteOwnersOf(userId).isEmpty();
     }
 
     /**
-     * Disconnect a user
+     * Disconnect a user, every connection of the user on this node
      */
     public void disconnectUser(Integer userId) {
-        String key = getUserKey(userId);
-        SseEmitter emitter = userEmitters.get(key);
+        UserConnections user = userEmitters.get(userId);
 
-        if (emitter != null) {
-            try {
-                emitter.complete();
-            } catch (Exception e) {
-                log.error("Error completing SSE connection for user {}: {}", userId, e.getMessage());
+        if (user != null) {
+            for (SseConnection connection : user.connections) {
+                detachUserEmitter(userId, connection);
+                // Completed by its writer once what is queued is written
+                connection.disconnect();
             }
-            removeUserEmitter(key);
             log.info("User {} disconnected from SSE", userId);
         }
     }
 
-    private String getUserKey(Integer userId) {
-        return "user_" + userId;
+    private void removeUserEmitter(Integer userId, SseConnection connection) {
+        connection.close();
+        detachUserEmitter(userId, connection);
     }
 
-    private void removeUserEmitter(String key) {
-        userEmitters.remove(key);
+    /**
+     * Take a connection out of the user's entry; the user leaves this node with the last one
+     */
+    private void detachUserEmitter(Integer userId, SseConnection connection) {
+        UserConnections user = userEmitters.get(userId);
+        if (user != null && user.remove(connection)) {
+            userEmitters.remove(userId, user);
+            presenceRegistry.unregister(userId);
+            if (userEmitters.containsKey(userId)) {
+                // Reconnected meanwhile; put the presence entry back
+                presenceRegistry.register(userId);
+            }
+        }
     }
 
-    private void removeTopicEmitter(String topic, SseEmitter emitter) {
-        List<SseEmitter> emitters = topicEmitters.get(topic);
+    private void removeTopicEmitter(String topic, SseConnection connection) {
+        connection.close();
+        List<SseConnection> emitters = topicEmitters.get(topic);
         if (emitters != null) {
-            emitters.remove(emitter);
+            emitters.remove(connection);
             if (emitters.isEmpty()) {
                 topicEmitters.remove(topic);
             }
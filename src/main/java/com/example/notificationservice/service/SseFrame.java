@@ -0,0 +1,49 @@
+package com.example.notificationservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * An SSE event encoded once to the bytes of its frame, for broadcasts. Every connection is sent the
+ * same byte array, which the emitter writes as is, instead of building an event and running Jackson
+ * per subscriber. The frame is what {@link org.springframework.web.servlet.mvc.method.annotation.SseEmitter.SseEventBuilder}
+ * would write: strings as they are, anything else as JSON.
+ */
+public final class SseFrame {
+
+    private final Set<ResponseBodyEmitter.DataWithMediaType> payload;
+
+    private SseFrame(byte[] bytes) {
+        this.payload = Set.of(new ResponseBodyEmitter.DataWithMediaType(bytes, MediaType.APPLICATION_OCTET_STREAM));
+    }
+
+    /**
+     * Encode an event
+     *
+     * @param id event id, or null for none
+     */
+    public static SseFrame encode(ObjectMapper objectMapper, String id, String name, Object data)
+            throws JsonProcessingException {
+        String text = data instanceof String string ? string : objectMapper.writeValueAsString(data);
+
+        StringBuilder frame = new StringBuilder(text.length() + 64);
+        if (id != null) {
+            frame.append("id:").append(id).append('\n');
+        }
+        frame.append("event:").append(name).append('\n');
+        frame.append("data:").append(text.replace("\n", "\ndata:")).append("\n\n");
+        return new SseFrame(frame.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * What to hand to {@link ResponseBodyEmitter#send(Set)}; immutable, shared by all connections
+     */
+    Set<ResponseBodyEmitter.DataWithMediaType> payload() {
+        return payload;
+    }
+}
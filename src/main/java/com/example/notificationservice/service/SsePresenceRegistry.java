@@ -0,0 +1,194 @@
+package com.example.notificationservice.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which nodes hold SSE connections of each user, kept in Redis as a hash
+ * {@code <key-prefix><userId> -> {nodeId: expiresAtMillis}}, since a user's devices may be connected
+ * to different nodes. Each node refreshes the entries of its connected users on an interval; an
+ * entry past its expiry is ignored, so entries of a node that died lapse on their own, and the hash
+ * itself expires once no node refreshes it. Every node listens on its own channel
+ * ({@link #nodeChannel()}) for pushes routed to it. For users connected here, the other nodes
+ * holding their connections are read when they connect and again on each refresh, so a push to
+ * them needs no lookup; a node a user connects to later is seen from the next refresh on.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SsePresenceRegistry {
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Value("${app.notification.sse.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${app.notification.sse.presence.key-prefix:notification:sse:presence-nodes:}")
+    private String keyPrefix;
+
+    @Value("${app.notification.sse.presence.channel-prefix:notification:sse:node:}")
+    private String channelPrefix;
+
+    @Value("${app.notification.sse.presence.ttl-ms:90000}")
+    private long ttlMs;
+
+    private final Set<Integer> localUsers = ConcurrentHashMap.newKeySet();
+    // Other nodes holding connections of each local user, as of its last read
+    private final Map<Integer, Set<String>> remoteOwners = new ConcurrentHashMap<>();
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId == null || configuredNodeId.isBlank()
+                ? UUID.randomUUID().toString()
+                : configuredNodeId;
+        log.info("SSE node id: {}", nodeId);
+    }
+
+    /**
+     * Id of this node; configured, or random per start
+     */
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Pub/sub channel pushes for this node are published on
+     */
+    public String nodeChannel() {
+        return channelFor(nodeId());
+    }
+
+    public String channelFor(String node) {
+        return channelPrefix + node;
+    }
+
+    /**
+     * Record that a user is connected to this node
+     */
+    public void register(Integer userId) {
+        localUsers.add(userId);
+        try {
+            String key = keyPrefix + userId;
+            stringRedisTemplate.opsForHash().put(key, nodeId(), String.valueOf(System.currentTimeMillis() + ttlMs));
+            stringRedisTemplate.expire(key, Duration.ofMillis(ttlMs));
+            remoteOwners.put(userId, withoutThisNode(ownersOf(userId)));
+        } catch (Exception e) {
+            // Picked up again by the next refresh
+            log.warn("⚠️ Failed to register SSE presence of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Record that a user is no longer connected to this node
+     */
+    public void unregister(Integer userId) {
+        localUsers.remove(userId);
+        remoteOwners.remove(userId);
+        try {
+            // Only this node's entry; the user may still be connected to others
+            stringRedisTemplate.opsForHash().delete(keyPrefix + userId, nodeId());
+        } catch (Exception e) {
+            // The entry expires after the TTL
+            log.warn("⚠️ Failed to remove SSE presence of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    /**
+     * Nodes holding connections of the user, this one included if it does; empty when the user is
+     * not connected anywhere
+     */
+    public Set<String> ownersOf(Integer userId) {
+        return liveOwners(stringRedisTemplate.opsForHash().entries(keyPrefix + userId), System.currentTimeMillis());
+    }
+
+    /**
+     * Other nodes holding connections of a user connected here, as of the last refresh; no Redis
+     * call. Empty for users not connected here.
+     */
+    public Set<String> remoteOwnersOf(Integer userId) {
+        return remoteOwners.getOrDefault(userId, Set.of());
+    }
+
+    private static Set<String> liveOwners(Map<?, ?> entries, long now) {
+        if (entries.isEmpty()) {
+            return Set.of();
+        }
+
+        Set<String> owners = new HashSet<>(entries.size());
+        entries.forEach((node, expiresAt) -> {
+            if (Long.parseLong((String) expiresAt) > now) {
+                owners.add((String) node);
+            }
+        });
+        return owners;
+    }
+
+    private Set<String> withoutThisNode(Set<String> owners) {
+        if (!owners.contains(nodeId())) {
+            return owners;
+        }
+        Set<String> others = new HashSet<>(owners);
+        others.remove(nodeId());
+        return others;
+    }
+
+    /**
+     * Extend the TTL of every user connected to this node and re-read the user's other nodes, in
+     * one pipeline
+     */
+    @Scheduled(fixedDelayString = "${app.notification.sse.presence.refresh-interval-ms:30000}")
+    public void refresh() {
+        if (localUsers.isEmpty()) {
+            return;
+        }
+
+        List<Integer> users = List.copyOf(localUsers);
+        byte[] node = nodeId().getBytes(StandardCharsets.UTF_8);
+        long now = System.currentTimeMillis();
+        byte[] expiresAt = String.valueOf(now + ttlMs).getBytes(StandardCharsets.UTF_8);
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Integer userId : users) {
+                    byte[] key = (keyPrefix + userId).getBytes(StandardCharsets.UTF_8);
+                    connection.hashCommands().hSet(key, node, expiresAt);
+                    connection.keyCommands().pExpire(key, ttlMs);
+                    connection.hashCommands().hGetAll(key);
+                }
+                return null;
+            });
+            for (int i = 0; i < users.size(); i++) {
+                Integer userId = users.get(i);
+                Set<String> others = withoutThisNode(liveOwners((Map<?, ?>) results.get(i * 3 + 2), now));
+                // Not kept for a user that left meanwhile
+                remoteOwners.compute(userId, (id, previous) -> localUsers.contains(id) ? others : null);
+            }
+            log.trace("Refreshed SSE presence of {} users", users.size());
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to refresh SSE presence: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void unregisterAll() {
+        for (Integer userId : List.copyOf(localUsers)) {
+            unregister(userId);
+        }
+    }
+}
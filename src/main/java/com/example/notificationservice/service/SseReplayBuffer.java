@@ -0,0 +1,181 @@
+package com.example.notificationservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recent SSE events per user, so a client reconnecting with {@code Last-Event-ID} gets what it
+ * missed. Each user's events carry increasing ids and the last {@code capacity} of them are kept.
+ * Ids start from the clock when a user's buffer is created, so they keep increasing after a buffer
+ * expired or a node restarted. By default the buffer is kept in memory, per node: each node appends
+ * the events it delivers to its own connections, so a client replays from the node it reconnects
+ * to. With {@code redis-enabled} the buffer is a capped Redis stream per user, shared by all nodes:
+ * an event is appended once, by the node that raised it, and carries its id to every node it is
+ * routed to, so a client can reconnect to any node. That costs a Redis round trip per push.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SseReplayBuffer {
+
+    // Next id from a per-user counter seeded from the clock, stored as the entry id <id>-0 so
+    // XRANGE can start after it
+    private static final DefaultRedisScript<Long> APPEND = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                local now = redis.call('TIME')
+                redis.call('SET', KEYS[2], now[1] * 1000 + math.floor(now[2] / 1000))
+            end
+            local id = redis.call('INCR', KEYS[2])
+            redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], id .. '-0', 'name', ARGV[2], 'data', ARGV[3])
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            redis.call('PEXPIRE', KEYS[2], ARGV[4])
+            return id
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.notification.sse.replay.capacity:50}")
+    private int capacity;
+
+    @Value("${app.notification.sse.replay.ttl-ms:300000}")
+    private long ttlMs;
+
+    @Value("${app.notification.sse.replay.max-users:100000}")
+    private long maxUsers;
+
+    @Value("${app.notification.sse.replay.redis-enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${app.notification.sse.replay.key-prefix:notification:sse:replay:}")
+    private String keyPrefix;
+
+    private Cache<Integer, UserBuffer> buffers;
+
+    /**
+     * Event as buffered and sent
+     */
+    public record BufferedEvent(long id, String name, Object data) {
+    }
+
+    private static final class UserBuffer {
+        private final ArrayDeque<BufferedEvent> events = new ArrayDeque<>();
+        private long lastId = System.currentTimeMillis();
+    }
+
+    @PostConstruct
+    public void init() {
+        buffers = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+    }
+
+    /**
+     * Whether the buffer is shared by all nodes, so an id given here is valid everywhere
+     */
+    public boolean isShared() {
+        return redisEnabled;
+    }
+
+    /**
+     * Give an event the user's next id and keep it for replay
+     *
+     * @return null when the event could not be buffered; it is then sent without an id
+     */
+    public BufferedEvent append(Integer userId, String name, Object data) {
+        if (redisEnabled) {
+            try {
+                return appendToRedis(userId, name, data);
+            } catch (Exception e) {
+                // No fallback to memory: a second id sequence would interleave with the stream's
+                log.warn("⚠️ Failed to buffer SSE event of user {} in Redis, it cannot be replayed: {}",
+                        userId, e.getMessage());
+                return null;
+            }
+        }
+
+        UserBuffer buffer = buffers.get(userId, id -> new UserBuffer());
+        synchronized (buffer) {
+            BufferedEvent event = new BufferedEvent(++buffer.lastId, name, data);
+            buffer.events.addLast(event);
+            if (buffer.events.size() > capacity) {
+                buffer.events.removeFirst();
+            }
+            return event;
+        }
+    }
+
+    /**
+     * Buffered events of a user after {@code lastEventId}, oldest first
+     */
+    public List<BufferedEvent> since(Integer userId, long lastEventId) {
+        if (redisEnabled) {
+            try {
+                return readFromRedis(userId, lastEventId);
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to read SSE replay of user {} from Redis: {}", userId, e.getMessage());
+                return List.of();
+            }
+        }
+
+        UserBuffer buffer = buffers.getIfPresent(userId);
+        if (buffer == null) {
+            return List.of();
+        }
+        synchronized (buffer) {
+            List<BufferedEvent> missed = new ArrayList<>();
+            for (BufferedEvent event : buffer.events) {
+                if (event.id() > lastEventId) {
+                    missed.add(event);
+                }
+            }
+            return missed;
+        }
+    }
+
+    private BufferedEvent appendToRedis(Integer userId, String name, Object data) throws Exception {
+        String payload = objectMapper.writeValueAsString(data);
+        Long id = stringRedisTemplate.execute(APPEND,
+                List.of(keyPrefix + userId, keyPrefix + userId + ":seq"),
+                String.valueOf(capacity), name, payload, String.valueOf(ttlMs));
+        if (id == null) {
+            throw new IllegalStateException("No id returned");
+        }
+        return new BufferedEvent(id, name, data);
+    }
+
+    private List<BufferedEvent> readFromRedis(Integer userId, long lastEventId) throws Exception {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream()
+                .range(keyPrefix + userId, Range.rightUnbounded(Range.Bound.inclusive((lastEventId + 1) + "-0")));
+        if (records == null || records.isEmpty()) {
+            return List.of();
+        }
+
+        List<BufferedEvent> missed = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> fields = record.getValue();
+            missed.add(new BufferedEvent(
+                    record.getId().getTimestamp(),
+                    (String) fields.get("name"),
+                    objectMapper.readValue((String) fields.get("data"), Object.class)));
+        }
+        return missed;
+    }
+}
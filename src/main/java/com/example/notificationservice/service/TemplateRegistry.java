@@ -0,0 +1,143 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.entity.NotificationTemplate;
+import com.example.notificationservice.enums.NotificationChannel;
+import com.example.notificationservice.repository.NotificationTemplateRepository;
+import com.example.notificationservice.util.CompiledTemplate;
+import com.example.notificationservice.util.TemplateEngine;
+import com.example.notificationservice.util.TransactionHooks;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * In-memory registry of compiled templates keyed by (event type, channel), so delivery does not
+ * read templates from the database. Missing templates are remembered as well, for a shorter time, so
+ * a template inserted outside TemplateService is picked up soon. Entries are dropped when
+ * TemplateService changes a template, on every node through a Redis pub/sub message, and expire
+ * after a while as a safety net.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TemplateRegistry {
+
+    private final NotificationTemplateRepository templateRepository;
+    private final TemplateEngine templateEngine;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Value("${app.redis.channels.template-invalidation:notification:template-invalidation}")
+    private String invalidationChannel;
+
+    @Value("${app.notification.templates.registry.expire-after-write-ms:600000}")
+    private long expireAfterWriteMs;
+
+    @Value("${app.notification.templates.registry.missing-expire-after-write-ms:30000}")
+    private long missingExpireAfterWriteMs;
+
+    private LoadingCache<TemplateKey, Optional<RegisteredTemplate>> templates;
+
+    /**
+     * Compiled template with the entity it came from
+     */
+    public record RegisteredTemplate(NotificationTemplate template, CompiledTemplate body, CompiledTemplate subject) {
+    }
+
+    private record TemplateKey(String eventType, NotificationChannel channel) {
+    }
+
+    @PostConstruct
+    public void init() {
+        Duration found = Duration.ofMillis(expireAfterWriteMs);
+        Duration missing = Duration.ofMillis(missingExpireAfterWriteMs);
+        templates = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfter(Expiry.writing((TemplateKey key, Optional<RegisteredTemplate> template) ->
+                        template.isPresent() ? found : missing))
+                .build(this::load);
+
+        redisMessageListenerContainer.addMessageListener((message, pattern) -> {
+            String name = new String(message.getBody(), StandardCharsets.UTF_8);
+            log.debug("Received template invalidation for: {}", name);
+            evict(name);
+        }, new ChannelTopic(invalidationChannel));
+    }
+
+    /**
+     * Template for an event type and channel, loaded and compiled on first use
+     */
+    public Optional<RegisteredTemplate> resolve(String eventType, NotificationChannel channel) {
+        return templates.get(new TemplateKey(eventType, channel));
+    }
+
+    /**
+     * Drop a template on this node and on every other node once the current transaction commits
+     */
+    public void invalidate(String templateName) {
+        Runnable action = () -> {
+            evict(templateName);
+            try {
+                stringRedisTemplate.convertAndSend(invalidationChannel, templateName);
+            } catch (Exception e) {
+                log.error("Failed to publish template invalidation for {}: {}", templateName, e.getMessage(), e);
+            }
+        };
+
+        TransactionHooks.afterCommit(action);
+    }
+
+    /**
+     * Map event type to template name based on channel.
+     * EMAIL channel uses _email suffix (HTML templates)
+     * PUSH channel uses _push suffix (plain text templates)
+     */
+    public String templateName(String eventType, NotificationChannel channel) {
+        String baseName = switch (eventType) {
+            case "user.registered" -> "welcome_user";
+            case "session.completed" -> "session_completion";
+            case "proctoring.violation" -> "proctoring_alert";
+            case "assessment.published" -> "new_assessment_assigned";
+            case "assessment.reminder" -> "assessment_reminder";
+            case "grade.available" -> "grade_available";
+            case "comment.feedback" -> "comment_feedback";
+            case "system.update" -> "system_update";
+            case "invite.student" -> "invite_student_to_group";
+            default -> eventType.replace(".", "_");
+        };
+
+        // Add channel-specific suffix
+        String suffix = switch (channel) {
+            case EMAIL -> "_email";
+            case PUSH -> "_push";
+        };
+
+        return baseName + suffix;
+    }
+
+    private Optional<RegisteredTemplate> load(TemplateKey key) {
+        String templateName = templateName(key.eventType(), key.channel());
+        log.debug("Loading template '{}' for event type '{}' channel '{}'", templateName, key.eventType(), key.channel());
+
+        return templateRepository.findByName(templateName).map(template -> new RegisteredTemplate(
+                template,
+                templateEngine.compiledBody(template),
+                templateEngine.compiledSubject(template)));
+    }
+
+    private void evict(String templateName) {
+        templates.asMap().keySet().removeIf(key -> templateName(key.eventType(), key.channel()).equals(templateName));
+    }
+}
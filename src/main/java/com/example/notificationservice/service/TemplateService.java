@@ -21,6 +21,7 @@ import java.util.Optional;
 public class TemplateService {
 
     private final NotificationTemplateRepository templateRepository;
+    private final TemplateRegistry templateRegistry;
 
     @Transactional
     @CacheEvict(value = "templates", key = "#dto.name")
@@ -38,6 +39,7 @@ public class TemplateService {
                 .build();
 
         NotificationTemplate saved = templateRepository.save(template);
+        templateRegistry.invalidate(saved.getName());
         log.info("Template created: {}", saved.getName());
         return mapToDto(saved);
     }
@@ -62,6 +64,7 @@ public class TemplateService {
             template.setVariables(dto.getVariables());
 
             NotificationTemplate updated = templateRepository.save(template);
+            templateRegistry.invalidate(name);
             log.info("Template updated: {}", name);
             return mapToDto(updated);
         });
@@ -72,6 +75,7 @@ public class TemplateService {
     public boolean deleteTemplate(String name) {
         return templateRepository.findByName(name).map(template -> {
             templateRepository.delete(template);
+            templateRegistry.invalidate(name);
             log.info("Template deleted: {}", name);
             return true;
         }).orElse(false);
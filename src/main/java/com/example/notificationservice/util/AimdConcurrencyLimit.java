@@ -0,0 +1,97 @@
+package com.example.notificationservice.util;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrency limit adjusted by additive increase / multiplicative decrease: every call that
+ * finishes within the latency target raises the limit by one, a slow or failed call halves it.
+ * Calls already in flight when the limit was cut don't cut it again, so one slow spell of the
+ * downstream counts as one signal.
+ */
+public final class AimdConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    // Written under the lock, read without it for metrics
+    private volatile int limit;
+    private volatile int inFlight;
+    private long lastDecreaseNanos;
+
+    public AimdConcurrencyLimit(int minLimit, int maxLimit, long latencyTargetMs) {
+        this(minLimit, maxLimit, latencyTargetMs, System::nanoTime);
+    }
+
+    // Tests pass a clock of their own
+    AimdConcurrencyLimit(int minLimit, int maxLimit, long latencyTargetMs, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits: min " + minLimit + ", max " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetMs * 1_000_000;
+        this.nanoClock = nanoClock;
+        this.limit = minLimit;
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Wait until a call may start
+     *
+     * @return start time to hand back to {@link #release}
+     */
+    public long acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                available.await();
+            }
+            inFlight++;
+            return nanoClock.getAsLong();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finish a call and adjust the limit
+     *
+     * @param startNanos value returned by {@link #acquire}
+     * @param units      amount of work the call did, the latency target applies per unit
+     * @param success    false when the call failed as a whole
+     */
+    public void release(long startNanos, int units, boolean success) {
+        long now = nanoClock.getAsLong();
+        long latencyPerUnit = (now - startNanos) / Math.max(units, 1);
+
+        lock.lock();
+        try {
+            inFlight--;
+            if (!success || latencyPerUnit > latencyTargetNanos) {
+                if (startNanos - lastDecreaseNanos >= 0) {
+                    limit = Math.max(minLimit, limit / 2);
+                    lastDecreaseNanos = now;
+                }
+            } else if (limit < maxLimit) {
+                limit++;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+}
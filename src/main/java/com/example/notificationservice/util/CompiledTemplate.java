@@ -0,0 +1,149 @@
+package com.example.notificationservice.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A template parsed once into alternating literal and variable segments.
+ * Immutable and safe to share between threads; rendering is a single pass over the segments
+ * into a pre-sized buffer. Placeholders without a value are kept as-is and reported.
+ */
+public final class CompiledTemplate {
+
+    private static final int ESTIMATED_VALUE_LENGTH = 16;
+
+    // literals[i] precedes variables[i]; the last literal follows the last variable
+    private final String[] literals;
+    private final String[] variables;
+    private final int estimatedLength;
+
+    private CompiledTemplate(String[] literals, String[] variables, int literalLength) {
+        this.literals = literals;
+        this.variables = variables;
+        this.estimatedLength = literalLength + variables.length * ESTIMATED_VALUE_LENGTH;
+    }
+
+    /**
+     * Parse {@code {{variable}}} placeholders; a variable name is one or more word characters
+     */
+    public static CompiledTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int literalLength = 0;
+        int literalStart = 0;
+        int i = 0;
+
+        while ((i = source.indexOf("{{", i)) >= 0) {
+            int nameStart = i + 2;
+            int nameEnd = nameStart;
+            while (nameEnd < source.length() && isWordChar(source.charAt(nameEnd))) {
+                nameEnd++;
+            }
+
+            if (nameEnd > nameStart && source.startsWith("}}", nameEnd)) {
+                String literal = source.substring(literalStart, i);
+                literals.add(literal);
+                literalLength += literal.length();
+                variables.add(source.substring(nameStart, nameEnd));
+                i = nameEnd + 2;
+                literalStart = i;
+            } else {
+                // Not a placeholder; a "{{{name}}" still matches one character later
+                i++;
+            }
+        }
+
+        String tail = source.substring(literalStart);
+        literals.add(tail);
+        literalLength += tail.length();
+
+        return new CompiledTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]), literalLength);
+    }
+
+    /**
+     * Partially evaluate: fill in every variable that has a value in {@code values} and is not in
+     * {@code keepOpen}. The result is a residual template holding only the remaining holes, with
+     * the literals around filled-in values merged.
+     */
+    public CompiledTemplate partial(Map<String, Object> values, Set<String> keepOpen) {
+        List<String> residualLiterals = new ArrayList<>();
+        List<String> residualVariables = new ArrayList<>();
+        int literalLength = 0;
+        StringBuilder literal = new StringBuilder(literals[0]);
+
+        for (int i = 0; i < variables.length; i++) {
+            Object value = keepOpen.contains(variables[i]) ? null : values.get(variables[i]);
+            if (value != null) {
+                literal.append(value).append(literals[i + 1]);
+            } else {
+                residualLiterals.add(literal.toString());
+                literalLength += literal.length();
+                residualVariables.add(variables[i]);
+                literal = new StringBuilder(literals[i + 1]);
+            }
+        }
+        residualLiterals.add(literal.toString());
+        literalLength += literal.length();
+
+        return new CompiledTemplate(residualLiterals.toArray(new String[0]),
+                residualVariables.toArray(new String[0]), literalLength);
+    }
+
+    /**
+     * Render with the given values
+     */
+    public Rendered render(Map<String, Object> data) {
+        return render(data, Map.of());
+    }
+
+    /**
+     * Render with the given values; variables absent from {@code data} are looked up in
+     * {@code fallback}, as if {@code data} had been put over a copy of it
+     */
+    public Rendered render(Map<String, Object> data, Map<String, Object> fallback) {
+        StringBuilder result = new StringBuilder(estimatedLength);
+        List<String> missing = null;
+
+        for (int i = 0; i < variables.length; i++) {
+            result.append(literals[i]);
+
+            Object value = data.containsKey(variables[i]) ? data.get(variables[i]) : fallback.get(variables[i]);
+            if (value != null) {
+                result.append(value);
+            } else {
+                // Keep the original placeholder if no value found
+                result.append("{{").append(variables[i]).append("}}");
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(variables[i]);
+            }
+        }
+        result.append(literals[variables.length]);
+
+        return new Rendered(result.toString(), missing != null ? missing : List.of());
+    }
+
+    /**
+     * Variable names in order of appearance, including repeats
+     */
+    public List<String> variables() {
+        return List.of(variables);
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Rendered text and the placeholders that had no value
+     */
+    public record Rendered(String text, List<String> missingVariables) {
+
+        public boolean isComplete() {
+            return missingVariables.isEmpty();
+        }
+    }
+}
@@ -1,17 +1,39 @@
 package com.example.notificationservice.util;
 
+import com.example.notificationservice.entity.NotificationTemplate;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.UUID;
 
 @Component("notificationTemplateEngine")
 @Slf4j
 public class TemplateEngine {
 
-    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{\\{(\\w+)\\}\\}");
+    private static final CompiledTemplate EMPTY = CompiledTemplate.compile("");
+
+    // Keyed by updatedAt as well, so an edited template is recompiled on its next use
+    private final Cache<CompiledKey, CompiledTemplate> compiledTemplates = Caffeine.newBuilder()
+            .maximumSize(500)
+            .build();
+
+    /**
+     * Compiled body of a stored template, cached by template id and last update
+     */
+    public CompiledTemplate compiledBody(NotificationTemplate template) {
+        return compiled(template, false, template.getBody());
+    }
+
+    /**
+     * Compiled subject of a stored template; empty when the template has no subject
+     */
+    public CompiledTemplate compiledSubject(NotificationTemplate template) {
+        return compiled(template, true, template.getSubject());
+    }
 
     /**
      * Process a template string by replacing placeholders with actual values
@@ -25,26 +47,9 @@ public class TemplateEngine {
             return template;
         }
 
-        StringBuffer result = new StringBuffer();
-        Matcher matcher = VARIABLE_PATTERN.matcher(template);
-
-        while (matcher.find()) {
-            String variableName = matcher.group(1);
-            Object value = data.get(variableName);
-
-            if (value != null) {
-                // Escape special characters in replacement string
-                String replacement = Matcher.quoteReplacement(value.toString());
-                matcher.appendReplacement(result, replacement);
-            } else {
-                // Keep the original placeholder if no value found
-                log.warn("No value found for template variable: {}", variableName);
-                matcher.appendReplacement(result, matcher.group(0));
-            }
-        }
-
-        matcher.appendTail(result);
-        return result.toString();
+        CompiledTemplate.Rendered rendered = CompiledTemplate.compile(template).render(data);
+        rendered.missingVariables().forEach(name -> log.warn("No value found for template variable: {}", name));
+        return rendered.text();
     }
 
     /**
@@ -59,11 +64,8 @@ public class TemplateEngine {
             return true;
         }
 
-        Matcher matcher = VARIABLE_PATTERN.matcher(template);
-
-        while (matcher.find()) {
-            String variableName = matcher.group(1);
-            if (!data.containsKey(variableName) || data.get(variableName) == null) {
+        for (String variableName : CompiledTemplate.compile(template).variables()) {
+            if (data.get(variableName) == null) {
                 log.error("Missing required template variable: {}", variableName);
                 return false;
             }
@@ -71,4 +73,18 @@ public class TemplateEngine {
 
         return true;
     }
-}
\ No newline at end of file
+
+    private CompiledTemplate compiled(NotificationTemplate template, boolean subject, String source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+        if (template.getId() == null) {
+            return CompiledTemplate.compile(source);
+        }
+        return compiledTemplates.get(new CompiledKey(template.getId(), template.getUpdatedAt(), subject),
+                key -> CompiledTemplate.compile(source));
+    }
+
+    private record CompiledKey(UUID templateId, Instant updatedAt, boolean subject) {
+    }
+}
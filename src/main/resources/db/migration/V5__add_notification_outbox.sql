@@ -0,0 +1,13 @@
+-- ============================
+-- Migration: Transactional outbox for notification-events
+-- ============================
+
+-- 1) Events are written in the same transaction as the notification rows they describe
+--    and removed by the relay once they are on the Redis stream. The relay drains oldest first
+--    by primary key (ids are time-ordered UUIDv7), so there is no timestamp column to index
+CREATE TABLE IF NOT EXISTS notification_outbox (
+    id          UUID PRIMARY KEY,
+    stream      VARCHAR(255) NOT NULL,
+    event_type  VARCHAR(255) NOT NULL,
+    payload     TEXT         NOT NULL
+);
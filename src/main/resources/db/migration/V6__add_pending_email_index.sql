@@ -0,0 +1,9 @@
+-- ============================
+-- Migration: Spilled email lookup
+-- ============================
+
+-- 1) Emails that did not fit in the in-memory send queue stay PENDING and are drained oldest
+--    first; updated_at doubles as the claim time of the drainer
+CREATE INDEX IF NOT EXISTS idx_notifications_pending_email_updated_at
+    ON notifications(updated_at)
+    WHERE status = 'PENDING' AND channel = 'EMAIL';
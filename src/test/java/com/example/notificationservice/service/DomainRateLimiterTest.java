@@ -0,0 +1,102 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.config.EmailRateLimitProperties;
+import com.example.notificationservice.config.EmailRateLimitProperties.Limit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DomainRateLimiterTest {
+
+    @Test
+    void allowsBurstThenWaitsForRefill() {
+        DomainRateLimiter.Bucket bucket = new DomainRateLimiter.Bucket(limit(10, 2, 100));
+        long t0 = System.nanoTime();
+
+        assertThat(bucket.tryAcquire(t0)).isZero();
+        assertThat(bucket.tryAcquire(t0)).isZero();
+        // One token every 100 ms
+        assertThat(bucket.tryAcquire(t0)).isBetween(99L, 100L);
+        assertThat(bucket.tryAcquire(t0 + ms(50))).isBetween(49L, 50L);
+        assertThat(bucket.tryAcquire(t0 + ms(101))).isZero();
+        assertThat(bucket.tryAcquire(t0 + ms(101))).isPositive();
+    }
+
+    @Test
+    void refillIsCappedAtBurst() {
+        DomainRateLimiter.Bucket bucket = new DomainRateLimiter.Bucket(limit(10, 3, 100));
+        long t0 = System.nanoTime();
+
+        // Idle for long enough to earn 100 tokens; only the burst is kept
+        long later = t0 + ms(10_000);
+        for (int i = 0; i < 3; i++) {
+            assertThat(bucket.tryAcquire(later)).isZero();
+        }
+        assertThat(bucket.tryAcquire(later)).isPositive();
+    }
+
+    @Test
+    void capsMessagesInFlight() {
+        DomainRateLimiter.Bucket bucket = new DomainRateLimiter.Bucket(limit(1000, 10, 1));
+        long t0 = System.nanoTime();
+
+        assertThat(bucket.tryAcquire(t0)).isZero();
+        assertThat(bucket.tryAcquire(t0)).isEqualTo(200L);
+
+        bucket.release();
+        assertThat(bucket.tryAcquire(t0)).isZero();
+    }
+
+    @Test
+    void pauseHoldsTheDomainAndEmptiesTheBucket() {
+        DomainRateLimiter.Bucket bucket = new DomainRateLimiter.Bucket(limit(10, 5, 100));
+        long t0 = System.nanoTime();
+
+        bucket.pause(t0, ms(30_000));
+
+        assertThat(bucket.tryAcquire(t0)).isEqualTo(30_000L);
+        assertThat(bucket.tryAcquire(t0 + ms(29_990))).isEqualTo(10L);
+        // Tokens refill from the end of the pause, not from before it
+        assertThat(bucket.tryAcquire(t0 + ms(30_000))).isBetween(99L, 100L);
+        assertThat(bucket.tryAcquire(t0 + ms(30_101))).isZero();
+    }
+
+    @Test
+    void domainsHaveBucketsOfTheirOwn() {
+        EmailRateLimitProperties properties = new EmailRateLimitProperties();
+        properties.setDefaults(limit(0.001, 1, 10));
+        properties.getDomains().put("gmail.com", limit(0.001, 2, 10));
+        DomainRateLimiter limiter = new DomainRateLimiter(properties, new SimpleMeterRegistry());
+
+        assertThat(limiter.tryAcquire("example.com")).isZero();
+        assertThat(limiter.tryAcquire("example.com")).isPositive();
+        // Unlisted domains share the defaults, not the bucket
+        assertThat(limiter.tryAcquire("example.org")).isZero();
+        assertThat(limiter.tryAcquire("gmail.com")).isZero();
+        assertThat(limiter.tryAcquire("gmail.com")).isZero();
+        assertThat(limiter.tryAcquire("gmail.com")).isPositive();
+    }
+
+    @Test
+    void domainOfLowerCasesTheDomainPart() {
+        assertThat(DomainRateLimiter.domainOf("Student.42@Mail.Example.COM")).isEqualTo("mail.example.com");
+        assertThat(DomainRateLimiter.domainOf("odd\"@\"name@gmail.com ")).isEqualTo("gmail.com");
+        assertThat(DomainRateLimiter.domainOf("no-domain")).isEmpty();
+        assertThat(DomainRateLimiter.domainOf(null)).isEmpty();
+    }
+
+    private static Limit limit(double ratePerSecond, int burst, int maxConcurrent) {
+        Limit limit = new Limit();
+        limit.setRatePerSecond(ratePerSecond);
+        limit.setBurst(burst);
+        limit.setMaxConcurrent(maxConcurrent);
+        return limit;
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
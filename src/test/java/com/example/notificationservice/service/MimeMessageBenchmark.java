@@ -0,0 +1,87 @@
+package com.example.notificationservice.service;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building and writing one templated email: MimeMessageHelper with a multipart message,
+ * as EmailService did per email, MimeMessageHelper with a single part, and a message built with
+ * the {@link MimeHeaderCache}.
+ * Run with {@code -prof gc} for allocation per email ({@code gc.alloc.rate.norm}).
+ *
+ * Not part of the test run; start {@link #main} after {@code mvn test-compile}, or org.openjdk.jmh.Main
+ * with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MimeMessageBenchmark {
+
+    private static final String SUBJECT = "Nouvelle évaluation assignée";
+    private static final String BODY = "<html><body><h1>Bonjour Étudiant 42,</h1>"
+            + "<p>Une nouvelle évaluation <b>Algèbre linéaire</b> vous a été assignée.</p>"
+            + "<p>Date limite : 2026-10-20 23:59</p>".repeat(20)
+            + "</body></html>";
+
+    private Session session;
+    private MimeHeaderCache headers;
+
+    @Setup
+    public void setup() throws Exception {
+        session = Session.getInstance(new Properties());
+        headers = new MimeHeaderCache("noreply@example.com", "Exam Platform");
+    }
+
+    @Benchmark
+    public void helper(Blackhole blackhole) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom("noreply@example.com", "Exam Platform");
+        helper.setTo("student42@example.com");
+        helper.setSubject(SUBJECT);
+        helper.setText(BODY, true);
+        write(message, blackhole);
+    }
+
+    @Benchmark
+    public void helperSinglePart(Blackhole blackhole) throws Exception {
+        MimeMessage message = new MimeMessage(session);
+        MimeMessageHelper helper = new MimeMessageHelper(message, false, "UTF-8");
+        helper.setFrom("noreply@example.com", "Exam Platform");
+        helper.setTo("student42@example.com");
+        helper.setSubject(SUBJECT);
+        helper.setText(BODY, true);
+        write(message, blackhole);
+    }
+
+    @Benchmark
+    public void headerCache(Blackhole blackhole) throws Exception {
+        write(headers.create(() -> new MimeMessage(session), "student42@example.com", SUBJECT, BODY), blackhole);
+    }
+
+    private static void write(MimeMessage message, Blackhole blackhole) throws Exception {
+        message.saveChanges();
+        message.writeTo(OutputStream.nullOutputStream());
+        blackhole.consume(message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MimeMessageBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
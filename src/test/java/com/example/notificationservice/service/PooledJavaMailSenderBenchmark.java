@@ -0,0 +1,80 @@
+package com.example.notificationservice.service;
+
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Email throughput against a local GreenMail SMTP server: a connection per message
+ * (JavaMailSenderImpl) against pooled connections. GreenMail has no TLS or AUTH, so against a
+ * real relay the gap is wider.
+ *
+ * Not part of the test run; start {@link #main} after {@code mvn test-compile}, or org.openjdk.jmh.Main
+ * with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(4)
+public class PooledJavaMailSenderBenchmark {
+
+    @Param({"perMessage", "pooled"})
+    private String sender;
+
+    private GreenMail greenMail;
+    private JavaMailSenderImpl mailSender;
+
+    @Setup
+    public void setup() {
+        ServerSetup smtp = new ServerSetup(3925, "localhost", ServerSetup.PROTOCOL_SMTP);
+        greenMail = new GreenMail(smtp);
+        greenMail.start();
+
+        mailSender = sender.equals("pooled")
+                ? new PooledJavaMailSender(4, 60_000, 1_000, 10_000)
+                : new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.getPort());
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (mailSender instanceof PooledJavaMailSender pooled) {
+            pooled.close();
+        }
+        greenMail.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void purge() throws Exception {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @Benchmark
+    public void send() throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom("noreply@example.com", "Exam Platform");
+        helper.setTo("student@example.com");
+        helper.setSubject("New assessment assigned");
+        helper.setText("<p>A new assessment has been assigned to you.</p>", true);
+        mailSender.send(message);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PooledJavaMailSenderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.notificationservice.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.MimeMessageHelper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PooledJavaMailSenderTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private PooledJavaMailSender sender;
+
+    @BeforeEach
+    void setUp() {
+        sender = new PooledJavaMailSender(2, 60_000, 10, 1_000);
+        sender.setHost("localhost");
+        sender.setPort(ServerSetupTest.SMTP.getPort());
+    }
+
+    @Test
+    void reusesConnectionAcrossSends() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            sender.send(message("user" + i + "@example.com"));
+        }
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(5);
+        assertThat(sender.getOpenedConnections()).isEqualTo(1);
+    }
+
+    @Test
+    void reconnectsAfterMaxMessagesPerConnection() throws Exception {
+        MimeMessage[] batch = new MimeMessage[25];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = message("user" + i + "@example.com");
+        }
+
+        sender.send(batch);
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(25);
+        assertThat(sender.getOpenedConnections()).isEqualTo(3);
+    }
+
+    @Test
+    void reconnectsAfterServerRestart() throws Exception {
+        sender.send(message("before@example.com"));
+
+        greenMail.stop();
+        greenMail.start();
+        // Older than the NOOP threshold, so the dead connection is detected on borrow
+        Thread.sleep(1_100);
+
+        sender.send(message("after@example.com"));
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(1);
+        assertThat(sender.getOpenedConnections()).isEqualTo(2);
+    }
+
+    @Test
+    void reportsFailureWhenServerIsDown() throws Exception {
+        MimeMessage message = message("user@example.com");
+        greenMail.stop();
+
+        assertThatThrownBy(() -> sender.send(message))
+                .isInstanceOf(MailSendException.class)
+                .satisfies(e -> assertThat(((MailSendException) e).getFailedMessages()).containsKey(message));
+    }
+
+    private MimeMessage message(String to) throws Exception {
+        MimeMessage message = sender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        helper.setFrom("noreply@example.com");
+        helper.setTo(to);
+        helper.setSubject("Test");
+        helper.setText("<p>Hello</p>", true);
+        return message;
+    }
+}
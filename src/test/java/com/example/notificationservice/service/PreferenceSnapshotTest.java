@@ -0,0 +1,118 @@
+package com.example.notificationservice.service;
+
+import com.example.notificationservice.entity.NotificationPreference;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.example.notificationservice.enums.NotificationChannel.EMAIL;
+import static com.example.notificationservice.enums.NotificationChannel.PUSH;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreferenceSnapshotTest {
+
+    private static final PreferenceSnapshot.EventType GRADE = PreferenceSnapshot.eventType("grade.available");
+    private static final PreferenceSnapshot.EventType REMINDER = PreferenceSnapshot.eventType("assessment.reminder");
+    private static final PreferenceSnapshot.EventType CUSTOM = PreferenceSnapshot.eventType("course.archived");
+
+    @Test
+    void knownEventTypesGetTheirIndexAndOthersNone() {
+        for (int i = 0; i < PreferenceSnapshot.KNOWN_EVENT_TYPES.size(); i++) {
+            assertThat(PreferenceSnapshot.eventType(PreferenceSnapshot.KNOWN_EVENT_TYPES.get(i)).index()).isEqualTo(i);
+        }
+        assertThat(CUSTOM.index()).isNegative();
+        assertThat(PreferenceSnapshot.eventType("course.archived")).isEqualTo(CUSTOM);
+    }
+
+    @Test
+    void globalChannelSettingsApplyWithoutCategories() {
+        PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference(true, true, false, null));
+
+        assertThat(snapshot.allows(GRADE, EMAIL)).isTrue();
+        assertThat(snapshot.allows(GRADE, PUSH)).isFalse();
+        assertThat(snapshot.allows(CUSTOM, EMAIL)).isTrue();
+        assertThat(snapshot.weight()).isEqualTo(1);
+    }
+
+    @Test
+    void notificationsSwitchWinsOverEverything() {
+        PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference(false, true, true,
+                Map.of("grade.available", Map.of("emailEnabled", true))));
+
+        assertThat(snapshot.allows(GRADE, EMAIL)).isFalse();
+        assertThat(snapshot.allows(GRADE, PUSH)).isFalse();
+    }
+
+    @Test
+    void onlyExplicitFalseTurnsNotificationsOffAndOnlyExplicitTrueTurnsChannelsOn() {
+        PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference(null, null, true, null));
+
+        assertThat(snapshot.allows(GRADE, EMAIL)).isFalse();
+        assertThat(snapshot.allows(GRADE, PUSH)).isTrue();
+    }
+
+    @Test
+    void categorySettingOverridesGlobalChannelPerChannel() {
+        PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference(true, true, false, Map.of(
+                "grade.available", Map.of("emailEnabled", false, "pushEnabled", true),
+                "assessment.reminder", Map.of("pushEnabled", true))));
+
+        assertThat(snapshot.allows(GRADE, EMAIL)).isFalse();
+        assertThat(snapshot.allows(GRADE, PUSH)).isTrue();
+        // Email is not set for reminders, so the global setting applies
+        assertThat(snapshot.allows(REMINDER, EMAIL)).isTrue();
+        assertThat(snapshot.allows(REMINDER, PUSH)).isTrue();
+        // Other known types are untouched
+        assertThat(snapshot.allows(PreferenceSnapshot.eventType("system.update"), PUSH)).isFalse();
+    }
+
+    @Test
+    void unknownEventTypesFallBackToTheirName() {
+        PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference(true, true, true, Map.of(
+                "course.archived", Map.of("emailEnabled", false))));
+
+        assertThat(snapshot.allows(CUSTOM, EMAIL)).isFalse();
+        assertThat(snapshot.allows(CUSTOM, PUSH)).isTrue();
+        assertThat(snapshot.allows(PreferenceSnapshot.eventType("course.renamed"), EMAIL)).isTrue();
+        assertThat(snapshot.allows(GRADE, EMAIL)).isTrue();
+    }
+
+    @Test
+    void unknownEventTypesDoNotGrowTheTable() {
+        Map<String, Map<String, Boolean>> categories = new HashMap<>();
+        for (int i = 0; i < 100; i++) {
+            categories.put("custom.type" + i, Map.of("pushEnabled", false));
+        }
+        categories.put("user.registered", Map.of("pushEnabled", false));
+
+        PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference(true, true, true, categories));
+
+        // One unit, one slot for user.registered (index 0), one per other type
+        assertThat(snapshot.weight()).isEqualTo(1 + 1 + 100);
+        assertThat(PreferenceSnapshot.eventType("custom.type7").index()).isNegative();
+        assertThat(snapshot.allows(PreferenceSnapshot.eventType("custom.type7"), PUSH)).isFalse();
+    }
+
+    @Test
+    void nullCategorySettingsAreIgnored() {
+        Map<String, Map<String, Boolean>> categories = new HashMap<>();
+        categories.put("grade.available", null);
+
+        PreferenceSnapshot snapshot = PreferenceSnapshot.of(preference(true, false, true, categories));
+
+        assertThat(snapshot.allows(GRADE, EMAIL)).isFalse();
+        assertThat(snapshot.allows(GRADE, PUSH)).isTrue();
+    }
+
+    private static NotificationPreference preference(Boolean enabled, Boolean email, Boolean push,
+            Map<String, Map<String, Boolean>> categories) {
+        NotificationPreference preference = new NotificationPreference();
+        preference.setUserId(42);
+        preference.setNotificationsEnabled(enabled);
+        preference.setEmailEnabled(email);
+        preference.setPushEnabled(push);
+        preference.setCategories(categories);
+        return preference;
+    }
+}
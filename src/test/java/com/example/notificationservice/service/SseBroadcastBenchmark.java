@@ -0,0 +1,144 @@
+package com.example.notificationservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitterReturnValueHandler;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one broadcast to {@code connections} in-process emitters: an event built and serialized
+ * by Jackson per emitter, as SseEmitterService did, against one {@link SseFrame} written to all of
+ * them. The emitters are initialized by Spring MVC's return value handler, so sends go through the
+ * real message converters, into a response that discards the bytes. Run with {@code -prof gc} for
+ * allocation per broadcast ({@code gc.alloc.rate.norm}).
+ *
+ * Not part of the test run; start {@link #main} after {@code mvn test-compile}, or org.openjdk.jmh.Main
+ * with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseBroadcastBenchmark {
+
+    @Param({"1000", "5000"})
+    private int connections;
+
+    private ObjectMapper objectMapper;
+    private List<SseEmitter> emitters;
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        ResponseBodyEmitterReturnValueHandler handler = new ResponseBodyEmitterReturnValueHandler(List.of(
+                new ByteArrayHttpMessageConverter(),
+                new StringHttpMessageConverter(),
+                new MappingJackson2HttpMessageConverter(objectMapper)));
+        MethodParameter returnType = new MethodParameter(SseBroadcastBenchmark.class.getDeclaredMethod("stream"), -1);
+
+        emitters = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/sse/topic/system");
+            request.setAsyncSupported(true);
+            MockHttpServletResponse response = new DiscardingResponse();
+            WebAsyncUtils.getAsyncManager(request).setAsyncWebRequest(new StandardServletAsyncWebRequest(request, response));
+
+            SseEmitter emitter = new SseEmitter(0L);
+            handler.handleReturnValue(emitter, returnType, new ModelAndViewContainer(), new ServletWebRequest(request, response));
+            emitters.add(emitter);
+        }
+
+        data = Map.of(
+                "type", "system-update",
+                "message", "Maintenance planned on 2026-10-20 from 22:00 to 23:00; submissions stay open",
+                "severity", "info",
+                "timestamp", Instant.parse("2026-10-17T10:00:00Z"),
+                "affectedServices", List.of("exams", "grading", "notifications"));
+    }
+
+    @Benchmark
+    public void perEmitter() throws Exception {
+        String id = String.valueOf(System.currentTimeMillis());
+        for (SseEmitter emitter : emitters) {
+            emitter.send(SseEmitter.event()
+                    .id(id)
+                    .name("system-update")
+                    .data(data));
+        }
+    }
+
+    @Benchmark
+    public void serializeOnce() throws Exception {
+        SseFrame frame = SseFrame.encode(objectMapper, String.valueOf(System.currentTimeMillis()), "system-update", data);
+        for (SseEmitter emitter : emitters) {
+            emitter.send(frame.payload());
+        }
+    }
+
+    // Return type the emitters are handled as
+    @SuppressWarnings("unused")
+    private SseEmitter stream() {
+        return null;
+    }
+
+    private static final class DiscardingResponse extends MockHttpServletResponse {
+
+        private final ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SseBroadcastBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
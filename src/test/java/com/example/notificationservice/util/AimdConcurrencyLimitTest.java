@@ -0,0 +1,114 @@
+package com.example.notificationservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AimdConcurrencyLimitTest {
+
+    @Test
+    void fastCallsRaiseTheLimitByOneUpToMax() throws Exception {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(1, 4, 1_000);
+        assertThat(limit.getLimit()).isEqualTo(1);
+
+        for (int expected = 2; expected <= 4; expected++) {
+            limit.release(limit.acquire(), 1, true);
+            assertThat(limit.getLimit()).isEqualTo(expected);
+        }
+        limit.release(limit.acquire(), 1, true);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void failedCallHalvesTheLimitDownToMin() throws Exception {
+        AimdConcurrencyLimit limit = raisedTo(new AimdConcurrencyLimit(2, 16, 1_000), 9);
+
+        limit.release(limit.acquire(), 1, false);
+        assertThat(limit.getLimit()).isEqualTo(4);
+        limit.release(limit.acquire(), 1, false);
+        assertThat(limit.getLimit()).isEqualTo(2);
+        limit.release(limit.acquire(), 1, false);
+        assertThat(limit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void latencyTargetAppliesPerUnit() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        AimdConcurrencyLimit limit = raisedTo(new AimdConcurrencyLimit(1, 16, 10, clock::get), 8);
+
+        // 20 ms for 100 units is fast enough
+        long start = limit.acquire();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+        limit.release(start, 100, true);
+        assertThat(limit.getLimit()).isEqualTo(9);
+
+        // 20 ms for a single unit is not
+        start = limit.acquire();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(20));
+        limit.release(start, 1, true);
+        assertThat(limit.getLimit()).isEqualTo(4);
+
+        // Exactly on target still counts as fast
+        start = limit.acquire();
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(10));
+        limit.release(start, 1, true);
+        assertThat(limit.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void callsStartedBeforeADecreaseDoNotDecreaseAgain() throws Exception {
+        AimdConcurrencyLimit limit = raisedTo(new AimdConcurrencyLimit(1, 16, 1_000), 8);
+
+        long first = limit.acquire();
+        long second = limit.acquire();
+        limit.release(first, 1, false);
+        assertThat(limit.getLimit()).isEqualTo(4);
+
+        // Same slow spell: already accounted for
+        limit.release(second, 1, false);
+        assertThat(limit.getLimit()).isEqualTo(4);
+
+        // A call started after the decrease is a new signal
+        limit.release(limit.acquire(), 1, false);
+        assertThat(limit.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void acquireWaitsForAFreeSlot() throws Exception {
+        AimdConcurrencyLimit limit = new AimdConcurrencyLimit(1, 1, 1_000);
+        long held = limit.acquire();
+
+        CompletableFuture<Long> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limit.acquire();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertThat(waiting).isNotDone();
+
+        limit.release(held, 1, true);
+        limit.release(waiting.get(1, TimeUnit.SECONDS), 1, true);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThatThrownBy(() -> new AimdConcurrencyLimit(0, 4, 100)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AimdConcurrencyLimit(4, 2, 100)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static AimdConcurrencyLimit raisedTo(AimdConcurrencyLimit limit, int target) throws Exception {
+        while (limit.getLimit() < target) {
+            limit.release(limit.acquire(), 1, true);
+        }
+        return limit;
+    }
+}
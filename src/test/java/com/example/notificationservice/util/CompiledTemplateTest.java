@@ -0,0 +1,118 @@
+package com.example.notificationservice.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledTemplateTest {
+
+    // How TemplateEngine rendered before templates were compiled
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{\\{(\\w+)\\}\\}");
+
+    private static final Map<String, Object> DATA = Map.of(
+            "firstName", "Amélie",
+            "assessment", "Algèbre $1 \\ linéaire",
+            "dueDate", "2026-10-20",
+            "count", 3);
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "No placeholders at all",
+            "{{firstName}}",
+            "Hello {{firstName}}, {{assessment}} is due {{dueDate}}",
+            "{{firstName}}{{firstName}}{{count}}",
+            "Missing {{unknown}} stays",
+            "{{{firstName}}} and {{ firstName }} and {{first-name}}",
+            "Unclosed {{firstName and {{dueDate}",
+            "{{}} {{firstName}}}} {{{{count}}",
+            "<p>{{count}} new</p>\n<p>Due {{dueDate}}</p>"
+    })
+    void rendersLikeTheRegex(String template) {
+        assertThat(CompiledTemplate.compile(template).render(DATA).text())
+                .isEqualTo(regexRender(template, DATA));
+    }
+
+    @Test
+    void keepsAndReportsMissingVariables() {
+        CompiledTemplate.Rendered rendered = CompiledTemplate.compile("{{firstName}} {{unknown}} {{other}}").render(DATA);
+
+        assertThat(rendered.text()).isEqualTo("Amélie {{unknown}} {{other}}");
+        assertThat(rendered.missingVariables()).containsExactly("unknown", "other");
+        assertThat(rendered.isComplete()).isFalse();
+    }
+
+    @Test
+    void listsVariablesInOrderWithRepeats() {
+        assertThat(CompiledTemplate.compile("{{a}} {{b}} {{a}} {{ c }}").variables()).containsExactly("a", "b", "a");
+    }
+
+    @Test
+    void partialLeavesOnlyTheOpenVariables() {
+        CompiledTemplate template = CompiledTemplate.compile("Hello {{firstName}}, {{assessment}} is due {{dueDate}}");
+
+        CompiledTemplate residual = template.partial(Map.of("assessment", "Algebra", "dueDate", "today"), Set.of("dueDate"));
+
+        assertThat(residual.variables()).containsExactly("firstName", "dueDate");
+        assertThat(residual.render(Map.of("firstName", "Bob", "dueDate", "tomorrow")).text())
+                .isEqualTo("Hello Bob, Algebra is due tomorrow");
+    }
+
+    @Test
+    void partialThenRenderMatchesRenderingMergedData() {
+        String source = "{{firstName}}: {{count}} x {{assessment}} ({{dueDate}}) {{unknown}}";
+        Map<String, Object> common = Map.of("assessment", "Algebra", "dueDate", "2026-10-20");
+        Map<String, Object> perUser = Map.of("firstName", "Amélie", "count", 3);
+
+        Map<String, Object> merged = new HashMap<>(common);
+        merged.putAll(perUser);
+
+        assertThat(CompiledTemplate.compile(source).partial(common, Set.of()).render(perUser).text())
+                .isEqualTo(regexRender(source, merged));
+    }
+
+    @Test
+    void renderPrefersDataOverFallback() {
+        CompiledTemplate template = CompiledTemplate.compile("{{firstName}} {{dueDate}} {{unknown}}");
+
+        CompiledTemplate.Rendered rendered = template.render(
+                Map.of("firstName", "Bob"),
+                Map.of("firstName", "Amélie", "dueDate", "2026-10-20"));
+
+        assertThat(rendered.text()).isEqualTo("Bob 2026-10-20 {{unknown}}");
+        assertThat(rendered.missingVariables()).isEqualTo(List.of("unknown"));
+    }
+
+    @Test
+    void nullInDataHidesFallback() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("firstName", null);
+
+        CompiledTemplate.Rendered rendered = CompiledTemplate.compile("Hi {{firstName}}")
+                .render(data, Map.of("firstName", "Amélie"));
+
+        // As with the merged map the fallback replaced: data's null wins, so the placeholder stays
+        assertThat(rendered.text()).isEqualTo("Hi {{firstName}}");
+        assertThat(rendered.missingVariables()).containsExactly("firstName");
+    }
+
+    private static String regexRender(String template, Map<String, Object> data) {
+        Matcher matcher = VARIABLE_PATTERN.matcher(template);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            Object value = data.get(matcher.group(1));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value != null ? value.toString() : matcher.group(0)));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+}
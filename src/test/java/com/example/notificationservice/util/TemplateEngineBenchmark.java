@@ -0,0 +1,107 @@
+package com.example.notificationservice.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders a several-KB email body per recipient: the previous regex engine (validate + process,
+ * two scans) against a template compiled once into segments.
+ *
+ * Not part of the test run; start {@link #main} after {@code mvn test-compile}, or org.openjdk.jmh.Main
+ * with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TemplateEngineBenchmark {
+
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\{\\{(\\w+)\\}\\}");
+
+    private String body;
+    private CompiledTemplate compiled;
+    private Map<String, Object> data;
+
+    @Setup
+    public void setup() {
+        StringBuilder html = new StringBuilder("<html><body><h1>Hello {{username}},</h1>");
+        for (int i = 0; i < 40; i++) {
+            html.append("<p style=\"font-family: Arial, sans-serif; color: #333333; line-height: 1.5;\">")
+                    .append("A new assessment has been assigned to your group. Please review the details below ")
+                    .append("and make sure you complete it before the deadline.</p>");
+            if (i % 10 == 0) {
+                html.append("<p>{{assessmentName}} takes {{duration}} minutes and is due {{dueDate}}.</p>");
+            }
+        }
+        html.append("<a href=\"https://example.com/u/{{username}}\">Open</a></body></html>");
+        body = html.toString();
+        compiled = CompiledTemplate.compile(body);
+
+        data = new HashMap<>();
+        data.put("username", "jane.doe");
+        data.put("assessmentName", "Algorithms Midterm");
+        data.put("duration", 90);
+        data.put("dueDate", "2025-02-01T00:00:00Z");
+    }
+
+    @Benchmark
+    public String regex() {
+        if (!regexValidate(body, data)) {
+            throw new IllegalStateException();
+        }
+        return regexProcess(body, data);
+    }
+
+    @Benchmark
+    public String compiled() {
+        CompiledTemplate.Rendered rendered = compiled.render(data);
+        if (!rendered.isComplete()) {
+            throw new IllegalStateException();
+        }
+        return rendered.text();
+    }
+
+    @Benchmark
+    public String compileAndRender() {
+        return CompiledTemplate.compile(body).render(data).text();
+    }
+
+    private static String regexProcess(String template, Map<String, Object> data) {
+        StringBuffer result = new StringBuffer();
+        Matcher matcher = VARIABLE_PATTERN.matcher(template);
+        while (matcher.find()) {
+            Object value = data.get(matcher.group(1));
+            matcher.appendReplacement(result, value != null
+                    ? Matcher.quoteReplacement(value.toString())
+                    : matcher.group(0));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static boolean regexValidate(String template, Map<String, Object> data) {
+        Matcher matcher = VARIABLE_PATTERN.matcher(template);
+        while (matcher.find()) {
+            if (data.get(matcher.group(1)) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TemplateEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}